@@ -0,0 +1,76 @@
+package scheduler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.campaign.CampaignPlan;
+import scheduler.campaign.CampaignPlanner;
+import scheduler.campaign.CampaignRequest;
+import scheduler.model.Patient;
+import scheduler.util.Util;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Plans and books a campaign of patients, each with a week-long window somewhere in the dataset's days and two
+// vaccines to choose from, against a freshly loaded dataset with a slot and a dose for every patient
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CampaignBenchmark {
+
+    private static final int WINDOW_DAYS = 7;
+    private static final int VACCINES = 3;
+
+    @Param({"10000", "100000"})
+    public int patients;
+
+    @Param({"365"})
+    public int days;
+
+    private List<CampaignRequest> requests;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws SQLException {
+        int caregivers = (patients + days - 1) / days;
+        Datasets.load(caregivers, days, VACCINES, patients);
+        byte[] salt = Util.generateSalt();
+        byte[] hash = Util.generateHash(Datasets.PASSWORD, salt);
+        List<Patient> list = new ArrayList<>(patients);
+        for (int i = 0; i < patients; i++) {
+            list.add(new Patient.PatientBuilder("campaign" + i, salt, hash).build());
+        }
+        Patient.saveAllToDB(list);
+
+        Random random = new Random(42);
+        requests = new ArrayList<>(patients);
+        for (int i = 0; i < patients; i++) {
+            int first = random.nextInt(days - WINDOW_DAYS + 1);
+            int v = random.nextInt(VACCINES);
+            requests.add(new CampaignRequest(i, "campaign" + i,
+                    Arrays.asList("v" + v, "v" + (v + 1) % VACCINES), Datasets.day(first),
+                    Datasets.day(first + WINDOW_DAYS - 1)));
+        }
+    }
+
+    @Benchmark
+    public CampaignPlan planAndBook() throws SQLException {
+        return new CampaignPlanner().run(requests);
+    }
+}
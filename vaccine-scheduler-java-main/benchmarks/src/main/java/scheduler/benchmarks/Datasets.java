@@ -0,0 +1,100 @@
+package scheduler.benchmarks;
+
+import scheduler.Session;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.DoseInventory;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Vaccine;
+import scheduler.model.Waitlist;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.Storages;
+import scheduler.storage.memory.MemoryStorage;
+import scheduler.util.Util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Fills a fresh in-memory storage with a dataset of caregivers "c0".., vaccines "v0".. and one patient "p0", every
+// caregiver available on each of the first days from FIRST_DAY. Everyone has the password PASSWORD.
+final class Datasets {
+    static final String PASSWORD = "password";
+    static final String PATIENT = "p0";
+    static final LocalDate FIRST_DAY = LocalDate.of(2030, 1, 1);
+
+    private Datasets() {
+    }
+
+    // Point the scheduler at an empty in-memory storage and drop everything cached from the previous one
+    static void reset() {
+        reset(SlotSelection.fromEnv());
+    }
+
+    static void reset(SlotSelection selection) {
+        DoseInventory.shutdown();
+        Storages.set(new MemoryStorage(selection));
+        AvailabilityIndex.invalidate();
+        Waitlist.invalidate();
+        Patient.getCredentialCache().invalidateAll();
+        Caregiver.getCredentialCache().invalidateAll();
+    }
+
+    static void load(int caregivers, int days, int vaccines, int dosesPerVaccine) throws SQLException {
+        load(caregivers, days, vaccines, dosesPerVaccine, SlotSelection.fromEnv());
+    }
+
+    static void load(int caregivers, int days, int vaccines, int dosesPerVaccine, SlotSelection selection)
+            throws SQLException {
+        reset(selection);
+        byte[] salt = Util.generateSalt();
+        byte[] hash = Util.generateHash(PASSWORD, salt);
+
+        List<Caregiver> list = new ArrayList<>(caregivers);
+        for (int i = 0; i < caregivers; i++) {
+            list.add(new Caregiver.CaregiverBuilder("c" + i, salt, hash).build());
+        }
+        Caregiver.saveAllToDB(list);
+        List<Date> dates = dates(days);
+        for (Caregiver caregiver : list) {
+            caregiver.uploadAvailability(dates);
+        }
+
+        List<Vaccine> doses = new ArrayList<>(vaccines);
+        for (int i = 0; i < vaccines; i++) {
+            doses.add(new Vaccine.VaccineBuilder("v" + i, dosesPerVaccine).build());
+        }
+        Vaccine.addAllDoses(doses);
+
+        new Patient.PatientBuilder(PATIENT, salt, hash).build().saveToDB();
+    }
+
+    static List<Date> dates(int days) {
+        List<Date> dates = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            dates.add(day(i));
+        }
+        return dates;
+    }
+
+    static Date day(int i) {
+        return Date.valueOf(FIRST_DAY.plusDays(i));
+    }
+
+    // A session whose output is thrown away
+    static Session session() {
+        return new Session(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    // A session logged in as the dataset's patient, without paying for a password check
+    static Session patientSession() {
+        Session session = session();
+        byte[] salt = Util.generateSalt();
+        session.setCurrentPatient(new Patient.PatientBuilder(PATIENT, salt, Util.generateHash(PASSWORD, salt)).build());
+        return session;
+    }
+}
@@ -0,0 +1,44 @@
+package scheduler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.Session;
+
+import java.util.concurrent.TimeUnit;
+
+// The path every input line takes before any storage is touched: tokenizing, command lookup, argument count and
+// role checks. Both commands are rejected before their handler runs.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private Session session;
+
+    @Setup
+    public void setUp() {
+        session = Datasets.session();
+    }
+
+    @Benchmark
+    public boolean knownCommand() {
+        // logged out, so this stops at the role check
+        return session.execute("reserve 2030-01-01 v0");
+    }
+
+    @Benchmark
+    public boolean unknownCommand() {
+        return session.execute("reserve_everything 2030-01-01 v0");
+    }
+}
@@ -0,0 +1,50 @@
+package scheduler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.Session;
+import scheduler.util.Util;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Password hashing on its own, and a whole login (credential lookup, hash, session update) through the session
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    private byte[] salt;
+    private Session session;
+    private String login;
+
+    @Setup
+    public void setUp() throws SQLException {
+        Datasets.load(1, 1, 1, 1);
+        salt = Util.generateSalt();
+        session = Datasets.session();
+        login = "login_patient " + Datasets.PATIENT + " " + Datasets.PASSWORD;
+    }
+
+    @Benchmark
+    public byte[] generateHash() {
+        return Util.generateHash(Datasets.PASSWORD, salt);
+    }
+
+    @Benchmark
+    public boolean login() {
+        session.execute(login);
+        return session.execute("logout");
+    }
+}
@@ -0,0 +1,64 @@
+package scheduler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.Session;
+import scheduler.storage.SlotSelection;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// Books every slot of a freshly loaded dataset (caregivers x days reservations, spread over the vaccines) and
+// reports the time for all of them. Slots are used up by booking, so each measurement needs its own dataset.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ReserveBenchmark {
+
+    @Param({"10", "100"})
+    public int caregivers;
+
+    @Param({"30", "365"})
+    public int days;
+
+    @Param({"3", "20"})
+    public int vaccines;
+
+    // how caregivers are picked, e.g. -p selection=ROUND_ROBIN,LEAST_LOADED to compare
+    @Param({"SKIP_LOCKED"})
+    public SlotSelection selection;
+
+    private Session session;
+    private String[] reservations;
+
+    @Setup(Level.Invocation)
+    public void setUp() throws SQLException {
+        Datasets.load(caregivers, days, vaccines, caregivers * days, selection);
+        session = Datasets.patientSession();
+        reservations = new String[caregivers * days];
+        for (int i = 0; i < reservations.length; i++) {
+            reservations[i] = "reserve " + Datasets.day(i / caregivers) + " v" + (i % vaccines);
+        }
+    }
+
+    @Benchmark
+    public Session reserveAll() {
+        for (String reservation : reservations) {
+            session.execute(reservation);
+        }
+        return session;
+    }
+}
@@ -0,0 +1,70 @@
+package scheduler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.Session;
+import scheduler.cache.AvailabilityIndex;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// search_caregiver_schedule for each day of the dataset in turn, and the free days of each caregiver in turn
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10", "100"})
+    public int caregivers;
+
+    @Param({"30", "365"})
+    public int days;
+
+    @Param({"3", "20"})
+    public int vaccines;
+
+    private Session session;
+    private String[] searches;
+    private int next = 0;
+    private AvailabilityIndex index;
+    private int nextCaregiver = 0;
+
+    @Setup
+    public void setUp() throws SQLException {
+        Datasets.load(caregivers, days, vaccines, 1000);
+        session = Datasets.patientSession();
+        searches = new String[days];
+        for (int i = 0; i < days; i++) {
+            searches[i] = "search_caregiver_schedule " + Datasets.day(i);
+        }
+        index = AvailabilityIndex.getInstance();
+    }
+
+    @Benchmark
+    public boolean search() {
+        String search = searches[next];
+        next = (next + 1) % searches.length;
+        return session.execute(search);
+    }
+
+    @Benchmark
+    public List<LocalDate> freeDays() {
+        String caregiver = "c" + nextCaregiver;
+        nextCaregiver = (nextCaregiver + 1) % caregivers;
+        return index.getFreeDays(caregiver, Datasets.day(0), Datasets.day(days - 1));
+    }
+}
@@ -0,0 +1,62 @@
+package scheduler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.snapshot.Snapshot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+// import_snapshot of a dataset with a slot for every caregiver and day (365k and 3.65M rows) into an empty storage
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"1000", "10000"})
+    public int caregivers;
+
+    @Param({"365"})
+    public int days;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException, SQLException {
+        Datasets.load(caregivers, days, 3, 1000);
+        file = Files.createTempFile("snapshot", ".snap");
+        Snapshot.export(file);
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        Datasets.reset();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long restore() throws IOException, SQLException {
+        return Snapshot.restore(file);
+    }
+}
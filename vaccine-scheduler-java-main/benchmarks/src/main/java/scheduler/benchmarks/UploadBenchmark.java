@@ -0,0 +1,68 @@
+package scheduler.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import scheduler.model.Caregiver;
+import scheduler.util.Util;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// A new caregiver publishing days dates, either as one multi-row upload or one date at a time
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UploadBenchmark {
+
+    @Param({"30", "365"})
+    public int days;
+
+    private byte[] salt;
+    private byte[] hash;
+    private List<Date> dates;
+    private int caregivers;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Datasets.reset();
+        salt = Util.generateSalt();
+        hash = Util.generateHash(Datasets.PASSWORD, salt);
+        dates = Datasets.dates(days);
+        caregivers = 0;
+    }
+
+    @Benchmark
+    public boolean[] uploadAll() throws SQLException {
+        return newCaregiver().uploadAvailability(dates);
+    }
+
+    @Benchmark
+    public Caregiver uploadEach() throws SQLException {
+        Caregiver caregiver = newCaregiver();
+        for (Date d : dates) {
+            caregiver.uploadAvailability(d);
+        }
+        return caregiver;
+    }
+
+    private Caregiver newCaregiver() throws SQLException {
+        Caregiver caregiver = new Caregiver.CaregiverBuilder("c" + caregivers++, salt, hash).build();
+        caregiver.saveToDB();
+        return caregiver;
+    }
+}
@@ -2,6 +2,7 @@ CREATE TABLE Caregivers (
     Username varchar(255),
     Salt BINARY(16),
     Hash BINARY(16),
+    HashSpec varchar(64),
     PRIMARY KEY (Username),
 );
 
@@ -9,6 +10,7 @@ CREATE TABLE Patients (
     Username varchar(255),
     Salt BINARY(16),
     Hash BINARY(16),
+    HashSpec varchar(64),
     PRIMARY KEY (Username)
 );
 
@@ -25,8 +27,15 @@ CREATE TABLE Vaccines (
     PRIMARY KEY (Name)
 );
 
+-- the last record of each local journal (see scheduler.journal) whose dose changes are in Vaccines
+CREATE TABLE JournalApplied (
+    JournalId varchar(36),
+    Seq bigint,
+    PRIMARY KEY (JournalId)
+);
+
 CREATE TABLE Appointments (
-    Appointment_id int,
+    Appointment_id int IDENTITY(1, 1),
     Time date,
     P_Username varchar(255),
     C_Username varchar(255),
@@ -35,4 +44,23 @@ CREATE TABLE Appointments (
     FOREIGN KEY (Time, C_Username) REFERENCES Availabilities,
     FOREIGN KEY (V_Name) REFERENCES Vaccines,
     FOREIGN KEY (P_Username) REFERENCES Patients
-);
\ No newline at end of file
+);
+
+-- patients waiting for a slot, served in Waitlist_id order
+CREATE TABLE Waitlist (
+    Waitlist_id int IDENTITY(1, 1),
+    Time date,
+    V_Name varchar(255) REFERENCES Vaccines,
+    P_Username varchar(255) REFERENCES Patients,
+    PRIMARY KEY (Waitlist_id),
+    UNIQUE (Time, V_Name, P_Username)
+);
+
+CREATE INDEX IX_Waitlist_Time ON Waitlist (Time, Waitlist_id) INCLUDE (V_Name, P_Username);
+
+-- reserve_earliest seeks the first free slot from a date on
+CREATE INDEX IX_Availabilities_Available ON Availabilities (Available, Time);
+
+-- show_appointments pages through one user's appointments in id order
+CREATE INDEX IX_Appointments_Caregiver ON Appointments (C_Username, Appointment_id) INCLUDE (Time, P_Username, V_Name);
+CREATE INDEX IX_Appointments_Patient ON Appointments (P_Username, Appointment_id) INCLUDE (Time, C_Username, V_Name);
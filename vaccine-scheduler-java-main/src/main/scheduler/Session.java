@@ -0,0 +1,858 @@
+package scheduler;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.campaign.CampaignPlan;
+import scheduler.campaign.CampaignPlanner;
+import scheduler.campaign.CampaignRequest;
+import scheduler.command.Command;
+import scheduler.command.CommandRegistry;
+import scheduler.command.Role;
+import scheduler.command.Tokens;
+import scheduler.metrics.Metrics;
+import scheduler.metrics.Timer;
+import scheduler.model.Appointment;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Vaccine;
+import scheduler.model.Waitlist;
+import scheduler.snapshot.Snapshot;
+import scheduler.storage.AppointmentQuery;
+import scheduler.util.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// The state of one user's conversation with the scheduler: who is logged in and where replies go. The
+// interactive console uses a single session, the server creates one per client connection.
+public class Session {
+
+    // objects to keep track of the currently logged-in user
+    // Note: it is always true that at most one of currentCaregiver and currentPatient is not null
+    //       since only one user can be logged-in at a time in a session
+    private Caregiver currentCaregiver = null;
+    private Patient currentPatient = null;
+
+    private static final CommandRegistry<Session> COMMANDS = new CommandRegistry<Session>()
+            .register(new Command.CommandBuilder<Session>("create_patient", Session::createPatient)
+                    .usage("<username> <password>").args(2).usageError("Failed to create user.").build())
+            .register(new Command.CommandBuilder<Session>("create_caregiver", Session::createCaregiver)
+                    .usage("<username> <password>").args(2).usageError("Failed to create user.").build())
+            .register(new Command.CommandBuilder<Session>("login_patient", Session::loginPatient)
+                    .usage("<username> <password>").args(2).role(Role.LOGGED_OUT).usageError("Login failed.")
+                    .build())
+            .register(new Command.CommandBuilder<Session>("login_caregiver", Session::loginCaregiver)
+                    .usage("<username> <password>").args(2).role(Role.LOGGED_OUT).usageError("Login failed.")
+                    .build())
+            .register(new Command.CommandBuilder<Session>("search_caregiver_schedule",
+                    Session::searchCaregiverSchedule)
+                    .usage("<date> [end_date] [vaccine]").args(1, 3).role(Role.LOGGED_IN).build())
+            .register(new Command.CommandBuilder<Session>("reserve", Session::reserve)
+                    .usage("<date> <vaccine>").args(2).role(Role.PATIENT).build())
+            .register(new Command.CommandBuilder<Session>("reserve_earliest", Session::reserveEarliest)
+                    .usage("<vaccine> [start_date] [end_date]").args(1, 3).role(Role.PATIENT).build())
+            .register(new Command.CommandBuilder<Session>("waitlist", Session::waitlist)
+                    .usage("<date> <vaccine>").args(2).role(Role.PATIENT).build())
+            .register(new Command.CommandBuilder<Session>("upload_availability", Session::uploadAvailability)
+                    .usage("<date> | <start_date> <end_date> [weekdays]").args(1, 3).role(Role.CAREGIVER).build())
+            .register(new Command.CommandBuilder<Session>("cancel", Session::cancel)
+                    .usage("<appointment_id>").args(1).role(Role.LOGGED_IN).build())
+            .register(new Command.CommandBuilder<Session>("cancel_day", Session::cancelDay)
+                    .usage("<date> [end_date]").args(1, 2).role(Role.CAREGIVER).build())
+            .register(new Command.CommandBuilder<Session>("add_doses", Session::addDoses)
+                    .usage("<vaccine> <number>").args(2).role(Role.CAREGIVER).build())
+            .register(new Command.CommandBuilder<Session>("plan_campaign", Session::planCampaign)
+                    .usage("<campaign_file>").args(1).role(Role.CAREGIVER).localOnly().build())
+            .register(new Command.CommandBuilder<Session>("export_snapshot", Session::exportSnapshot)
+                    .usage("<file>").args(1).role(Role.CAREGIVER).localOnly().build())
+            .register(new Command.CommandBuilder<Session>("import_snapshot", Session::importSnapshot)
+                    .usage("<file>").args(1).role(Role.LOGGED_OUT).localOnly().build())
+            .register(new Command.CommandBuilder<Session>("show_appointments", Session::showAppointments)
+                    .usage("[after_id] [limit] [start_date] [end_date]").args(0, 4).role(Role.LOGGED_IN).build())
+            .register(new Command.CommandBuilder<Session>("stats", Session::stats)
+                    .role(Role.CAREGIVER).build())
+            .register(new Command.CommandBuilder<Session>("logout", Session::logout)
+                    .role(Role.LOGGED_IN).build())
+            .register(new Command.CommandBuilder<Session>("quit", Session::quit).build());
+
+    // longest date range a single upload_availability or cancel_day accepts
+    private static final int MAX_UPLOAD_DAYS = 366;
+    // appointments show_appointments lists when no limit is given, and the most it lists at once
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final PrintStream out;
+    // reused for every line this session runs
+    private final Tokens tokens = new Tokens();
+    private boolean running = true;
+    // a client of the server rather than the console or a batch file
+    private final boolean remote;
+
+    public Session(PrintStream out) {
+        this(out, false);
+    }
+
+    public Session(PrintStream out, boolean remote) {
+        this.out = out;
+        this.remote = remote;
+    }
+
+    public void printWelcome() {
+        // printing greetings text
+        out.println();
+        out.println("Welcome to the COVID-19 Vaccine Reservation Scheduling Application!");
+        out.println("*** Please enter one of the following commands ***");
+        for (Command<Session> command : COMMANDS.getCommands()) {
+            if (!remote || !command.isLocalOnly()) {
+                out.println("> " + command.getUsage());
+            }
+        }
+        out.println();
+    }
+
+    // Run one line of user input. Returns false once the user has asked to quit.
+    public boolean execute(String response) {
+        if (response == null) {
+            // end of input
+            return false;
+        }
+        return execute(tokens.reset(response));
+    }
+
+    // Run an already tokenized command. Returns false once the user has asked to quit.
+    public boolean execute(Tokens tokens) {
+        // check if input exists
+        if (tokens.size() == 0) {
+            out.println("Please try again!");
+            return true;
+        }
+        // determine which operation to perform
+        Command<Session> command = COMMANDS.lookup(tokens);
+        if (command == null) {
+            out.println("Invalid operation name!");
+        } else if (authorize(command, tokens)) {
+            run(command, tokens);
+        }
+        return running;
+    }
+
+    // Run the command, timing it as command.<name>. It counts as failed if any call it made recorded a failure.
+    private void run(Command<Session> command, Tokens tokens) {
+        if (!Metrics.isEnabled()) {
+            command.run(this, tokens);
+            return;
+        }
+        Timer timer = Metrics.timer("command." + command.getName());
+        long errors = Metrics.getErrorsOnThisThread();
+        long start = timer.start();
+        boolean failed = true;
+        try {
+            command.run(this, tokens);
+            failed = Metrics.getErrorsOnThisThread() != errors;
+        } finally {
+            if (failed) {
+                timer.fail(start);
+            } else {
+                timer.stop(start);
+            }
+        }
+    }
+
+    // Check that the current user may run the command with these arguments, printing why not if they may not
+    public boolean authorize(Command<Session> command, Tokens tokens) {
+        if (remote && command.isLocalOnly()) {
+            out.println("This command is only available from the console or a batch file.");
+            return false;
+        }
+        if (!checkRole(command.getRole())) {
+            return false;
+        }
+        if (!command.acceptsArgs(tokens)) {
+            out.println(command.getUsageError());
+            return false;
+        }
+        return true;
+    }
+
+    public static CommandRegistry<Session> getCommands() {
+        return COMMANDS;
+    }
+
+    // Getters
+    public Caregiver getCurrentCaregiver() {
+        return currentCaregiver;
+    }
+
+    public Patient getCurrentPatient() {
+        return currentPatient;
+    }
+
+    public PrintStream getOut() {
+        return out;
+    }
+
+    // Make a newly created user the current one, as create_patient and create_caregiver do
+    public void setCurrentCaregiver(Caregiver caregiver) {
+        this.currentCaregiver = caregiver;
+    }
+
+    public void setCurrentPatient(Patient patient) {
+        this.currentPatient = patient;
+    }
+
+    // Print why the current user may not run a command for the given role, returns true if they may
+    private boolean checkRole(Role role) {
+        switch (role) {
+            case LOGGED_OUT:
+                if (currentCaregiver != null || currentPatient != null) {
+                    out.println("User already logged in.");
+                    return false;
+                }
+                return true;
+            case LOGGED_IN:
+                if (currentCaregiver == null && currentPatient == null) {
+                    out.println("Please login first.");
+                    return false;
+                }
+                return true;
+            case PATIENT:
+                if (currentPatient == null) {
+                    out.println(currentCaregiver == null ? "Please login first." : "Please login as a patient!");
+                    return false;
+                }
+                return true;
+            case CAREGIVER:
+                if (currentCaregiver == null) {
+                    out.println("Please login as a caregiver first!");
+                    return false;
+                }
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    private void createPatient(Tokens tokens) {
+        // create_caregiver <username> <password>
+        String username = tokens.get(1);
+        String password = tokens.get(2);
+        // check if the username has been taken already
+        if (usernameExistsPatient(username)) {
+            out.println("Username taken, try again!");
+            return;
+        }
+        // create the patient
+        try {
+            byte[] salt = Util.generateSalt();
+            byte[] hash = Util.generateHash(password, salt);
+            currentPatient = new Patient.PatientBuilder(username, salt, hash).build();
+            // save to patient information to our database
+            currentPatient.saveToDB();
+            out.println("Created user " + username);
+        } catch (IllegalStateException | SQLException e) {
+            out.println("Failed to create user.");
+            e.printStackTrace();
+        }
+    }
+
+    private boolean usernameExistsPatient(String username) {
+        try {
+            return Patient.exists(username);
+        } catch (SQLException e) {
+            out.println("Error occurred when checking username");
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    private void createCaregiver(Tokens tokens) {
+        // create_caregiver <username> <password>
+        String username = tokens.get(1);
+        String password = tokens.get(2);
+        // check if the username has been taken already
+        if (usernameExistsCaregiver(username)) {
+            out.println("Username taken, try again!");
+            return;
+        }
+        // create the caregiver
+        try {
+            byte[] salt = Util.generateSalt();
+            byte[] hash = Util.generateHash(password, salt);
+            currentCaregiver = new Caregiver.CaregiverBuilder(username, salt, hash).build();
+            // save to caregiver information to our database
+            currentCaregiver.saveToDB();
+            out.println("Created user " + username);
+        } catch (IllegalStateException | SQLException e) {
+            out.println("Failed to create user.");
+            e.printStackTrace();
+        }
+    }
+
+    private boolean usernameExistsCaregiver(String username) {
+        try {
+            return Caregiver.exists(username);
+        } catch (SQLException e) {
+            out.println("Error occurred when checking username");
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    private void loginPatient(Tokens tokens) {
+        // login_patient <username> <password>
+        String username = tokens.get(1);
+        String password = tokens.get(2);
+
+        Patient patient = null;
+        try {
+            patient = new Patient.PatientGetter(username, password).get();
+        } catch (IllegalStateException e) {
+            out.println("Login failed.");
+            e.printStackTrace();
+            return;
+        } catch (SQLException e) {
+            out.println("Login failed.");
+            e.printStackTrace();
+        }
+        // check if the login was successful
+        if (patient == null) {
+            out.println("Login failed.");
+        } else {
+            out.println("Logged in as: " + username);
+            currentPatient = patient;
+        }
+    }
+
+    private void loginCaregiver(Tokens tokens) {
+        // login_caregiver <username> <password>
+        String username = tokens.get(1);
+        String password = tokens.get(2);
+
+        Caregiver caregiver = null;
+        try {
+            caregiver = new Caregiver.CaregiverGetter(username, password).get();
+        } catch (IllegalStateException e) {
+            out.println("Login failed.");
+            e.printStackTrace();
+            return;
+        } catch (SQLException e) {
+            out.println("Login failed.");
+            e.printStackTrace();
+        }
+        // check if the login was successful
+        if (caregiver == null) {
+            out.println("Login failed.");
+        } else {
+            out.println("Logged in as: " + username);
+            currentCaregiver = caregiver;
+        }
+    }
+
+    private void searchCaregiverSchedule(Tokens tokens) {
+        // search_caregiver_schedule <date> [end_date] [vaccine]
+        // the free caregivers (or, for a range, the number of them per date) followed by one table of doses, so
+        // the output grows with caregivers plus vaccines rather than their product
+        Date date;
+        Date end = null;
+        String vaccine = null;
+        try {
+            date = Date.valueOf(tokens.get(1));
+            int i = 2;
+            if (i < tokens.size() && isDate(tokens.get(i))) {
+                end = Date.valueOf(tokens.get(i++));
+            }
+            if (i < tokens.size()) {
+                vaccine = tokens.get(i++);
+            }
+            if (i < tokens.size()) {
+                // two arguments after the date, but the first one is not a date
+                throw new IllegalArgumentException();
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        try {
+            AvailabilityIndex index = AvailabilityIndex.getInstance();
+            SortedMap<String, Integer> doses = index.getDoses();
+            if (vaccine != null) {
+                Integer remaining = index.getDoses(vaccine);
+                if (remaining == null) {
+                    out.println("No such vaccine exists!");
+                    return;
+                }
+                doses = new TreeMap<>(Collections.singletonMap(vaccine, remaining));
+            }
+            if (end != null) {
+                // range search: list every date in [date, end_date] with at least one free caregiver
+                SortedMap<LocalDate, Integer> dates = index.getAvailableDates(date, end);
+                if (dates.isEmpty()) {
+                    out.println("No Caregiver is available!");
+                    return;
+                }
+                for (Map.Entry<LocalDate, Integer> entry : dates.entrySet()) {
+                    out.println(entry.getKey() + " " + entry.getValue() + " caregiver(s) available");
+                }
+            } else {
+                List<String> caregivers = index.getAvailableCaregivers(date);
+                if (caregivers.isEmpty()) {
+                    out.println("No Caregiver is available!");
+                    return;
+                }
+                out.println("Available caregivers:");
+                for (String caregiver : caregivers) {
+                    out.println(caregiver);
+                }
+            }
+            out.println("Vaccine doses:");
+            for (Map.Entry<String, Integer> entry : doses.entrySet()) {
+                out.println(entry.getKey() + " " + entry.getValue());
+            }
+        } catch (SQLException e) {
+            out.println("Error occurred when searching caregiver schedule");
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean isDate(String s) {
+        try {
+            Date.valueOf(s);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void reserve(Tokens tokens) {
+        // reserve <date> <vaccine>
+        String date = tokens.get(1);
+        String vaccine = tokens.get(2);
+        try {
+            Date d = Date.valueOf(date);
+            Appointment appointment = new Appointment.AppointmentReserver(d, currentPatient.getUsername(),
+                    vaccine).reserve();
+            out.println("Appointment ID: {" + appointment.getAppointmentId() + "}, Caregiver username: {"
+                    + appointment.getCaregiverName() + "}");
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+        } catch (IllegalStateException e) {
+            out.println(e.getMessage());
+        } catch (SQLException e) {
+            out.println("Error occurred when reserving");
+            e.printStackTrace();
+        }
+    }
+
+    private void reserveEarliest(Tokens tokens) {
+        // reserve_earliest <vaccine> [start_date] [end_date]
+        String vaccine = tokens.get(1);
+        Date from;
+        Date to;
+        try {
+            from = tokens.size() > 2 ? Date.valueOf(tokens.get(2)) : Date.valueOf(LocalDate.now());
+            to = tokens.size() > 3 ? Date.valueOf(tokens.get(3)) : null;
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        if (to != null && to.before(from)) {
+            out.println("Please enter an end date on or after the start date!");
+            return;
+        }
+        try {
+            Appointment appointment = new Appointment.AppointmentReserver(from, to, currentPatient.getUsername(),
+                    vaccine).reserve();
+            out.println("Appointment ID: {" + appointment.getAppointmentId() + "}, Caregiver username: {"
+                    + appointment.getCaregiverName() + "}, Date: {" + appointment.getTime() + "}");
+        } catch (IllegalStateException e) {
+            out.println(e.getMessage());
+        } catch (SQLException e) {
+            out.println("Error occurred when reserving");
+            e.printStackTrace();
+        }
+    }
+
+    private void waitlist(Tokens tokens) {
+        // waitlist <date> <vaccine>
+        Date d;
+        try {
+            d = Date.valueOf(tokens.get(1));
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        String vaccine = tokens.get(2);
+        try {
+            if (new Vaccine.VaccineGetter(vaccine).get() == null) {
+                out.println("No such vaccine exists!");
+                return;
+            }
+            int position = Waitlist.join(d, vaccine, currentPatient.getUsername());
+            if (position == 0) {
+                out.println("Already on the waitlist!");
+            } else {
+                out.println("Added to the waitlist at position " + position +
+                        ", you will be booked as soon as a caregiver and a dose are free");
+            }
+        } catch (IllegalStateException e) {
+            out.println(e.getMessage());
+        } catch (SQLException e) {
+            out.println("Error occurred when joining the waitlist");
+            e.printStackTrace();
+        }
+    }
+
+    private void uploadAvailability(Tokens tokens) {
+        // upload_availability <date>
+        // upload_availability <start_date> <end_date> [weekdays]
+        if (tokens.size() > 2) {
+            uploadAvailabilityRange(tokens);
+            return;
+        }
+        String date = tokens.get(1);
+        try {
+            Date d = Date.valueOf(date);
+            currentCaregiver.uploadAvailability(d);
+            out.println("Availability uploaded!");
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+        } catch (SQLException e) {
+            out.println("Error occurred when uploading availability");
+            e.printStackTrace();
+        }
+    }
+
+    private void uploadAvailabilityRange(Tokens tokens) {
+        Date start;
+        Date end;
+        try {
+            start = Date.valueOf(tokens.get(1));
+            end = Date.valueOf(tokens.get(2));
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        long days = end.toLocalDate().toEpochDay() - start.toLocalDate().toEpochDay();
+        if (days < 0 || days >= MAX_UPLOAD_DAYS) {
+            out.println("Please enter a range of at most " + MAX_UPLOAD_DAYS + " days!");
+            return;
+        }
+        Set<DayOfWeek> weekdays = EnumSet.allOf(DayOfWeek.class);
+        if (tokens.size() == 4) {
+            weekdays = parseWeekdays(tokens.get(3));
+            if (weekdays == null) {
+                out.println("Please enter weekdays like MON,WED,FRI!");
+                return;
+            }
+        }
+        try {
+            boolean[] inserted = currentCaregiver.uploadAvailability(start, end, weekdays);
+            int added = 0;
+            for (boolean b : inserted) {
+                if (b) {
+                    added++;
+                }
+            }
+            out.println("Availability uploaded for " + added + " date(s), " + (inserted.length - added) +
+                    " already uploaded");
+        } catch (SQLException e) {
+            out.println("Error occurred when uploading availability");
+            e.printStackTrace();
+        }
+    }
+
+    // Parse a comma-separated list of days such as "MON,wed,Friday", returns null if a day is not recognized
+    private static Set<DayOfWeek> parseWeekdays(String list) {
+        Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+        for (String day : list.split(",")) {
+            String prefix = day.trim().toUpperCase();
+            if (prefix.length() < 3) {
+                return null;
+            }
+            DayOfWeek match = null;
+            for (DayOfWeek d : DayOfWeek.values()) {
+                if (d.name().startsWith(prefix)) {
+                    match = d;
+                }
+            }
+            if (match == null) {
+                return null;
+            }
+            weekdays.add(match);
+        }
+        return weekdays;
+    }
+
+    private void cancel(Tokens tokens) {
+        // cancel <appointment_id>
+        int appointmentId;
+        try {
+            appointmentId = Integer.parseInt(tokens.get(1));
+        } catch (NumberFormatException e) {
+            out.println("Please enter a valid appointment id!");
+            return;
+        }
+        try {
+            // patients cancel their own appointments, caregivers the appointments they give
+            Appointment cancelled = Appointment.cancel(appointmentId,
+                    currentPatient == null ? null : currentPatient.getUsername(),
+                    currentCaregiver == null ? null : currentCaregiver.getUsername());
+            if (cancelled == null) {
+                out.println("No such appointment!");
+                return;
+            }
+            out.println("Appointment " + appointmentId + " cancelled!");
+        } catch (SQLException e) {
+            out.println("Error occurred when cancelling");
+            e.printStackTrace();
+        }
+    }
+
+    private void cancelDay(Tokens tokens) {
+        // cancel_day <date> [end_date]
+        Date from;
+        Date to;
+        try {
+            from = Date.valueOf(tokens.get(1));
+            to = tokens.size() > 2 ? Date.valueOf(tokens.get(2)) : from;
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter a valid date!");
+            return;
+        }
+        long days = to.toLocalDate().toEpochDay() - from.toLocalDate().toEpochDay();
+        if (days < 0 || days >= MAX_UPLOAD_DAYS) {
+            out.println("Please enter a range of at most " + MAX_UPLOAD_DAYS + " days!");
+            return;
+        }
+        try {
+            List<Appointment> cancelled = Appointment.cancelAll(currentCaregiver.getUsername(), from, to);
+            for (Appointment a : cancelled) {
+                out.println("Cancelled appointment id: " + a.getAppointmentId() + ", Date: " + a.getTime() +
+                        ", Patient Name: " + a.getPatientName());
+            }
+            out.println("Cancelled " + cancelled.size() + " appointment(s), availability withdrawn");
+        } catch (SQLException e) {
+            out.println("Error occurred when cancelling");
+            e.printStackTrace();
+        }
+    }
+
+    private void addDoses(Tokens tokens) {
+        // add_doses <vaccine> <number>
+        String vaccineName = tokens.get(1);
+        int doses;
+        try {
+            doses = Integer.parseInt(tokens.get(2));
+        } catch (NumberFormatException e) {
+            out.println("Please enter a valid number!");
+            return;
+        }
+        if (doses <= 0) {
+            out.println("Please enter a valid number!");
+            return;
+        }
+        Vaccine vaccine = null;
+        try {
+            vaccine = new Vaccine.VaccineGetter(vaccineName).get();
+        } catch (SQLException e) {
+            out.println("Error occurred when adding doses");
+            e.printStackTrace();
+        }
+        // if getter returns null, it means that we need to create the vaccine and insert it into the Vaccines
+        //          table
+        if (vaccine == null) {
+            try {
+                vaccine = new Vaccine.VaccineBuilder(vaccineName, doses).build();
+                vaccine.saveToDB();
+            } catch (SQLException e) {
+                out.println("Error occurred when adding doses");
+                e.printStackTrace();
+            }
+        } else {
+            // if the vaccine is not null, meaning that the vaccine already exists in our table
+            try {
+                vaccine.increaseAvailableDoses(doses);
+            } catch (SQLException e) {
+                out.println("Error occurred when adding doses");
+                e.printStackTrace();
+            }
+        }
+        out.println("Doses updated!");
+    }
+
+    private void planCampaign(Tokens tokens) {
+        // plan_campaign <campaign_file>
+        // each line of the file is <patient> <vaccine>[,<vaccine>...] <start_date> <end_date>
+        Path file = resolveDataFile(tokens.get(1));
+        if (file == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<CampaignRequest> requests;
+        try (BufferedReader r = Files.newBufferedReader(file)) {
+            requests = CampaignPlanner.read(r);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return;
+        } catch (IOException e) {
+            out.println("Error occurred when reading the campaign file");
+            e.printStackTrace();
+            return;
+        }
+        try {
+            CampaignPlan plan = new CampaignPlanner().run(requests);
+            for (CampaignPlan.Unassigned u : plan.getUnassigned()) {
+                out.println("Unassigned: " + u.getPatientName() + ", " + u.getReason());
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            out.println("Booked " + plan.getPlanned().size() + " of " + requests.size() + " patient(s) in " +
+                    elapsedMillis + " ms");
+        } catch (IllegalStateException e) {
+            out.println(e.getMessage());
+        } catch (SQLException e) {
+            out.println("Error occurred when booking the campaign");
+            e.printStackTrace();
+        }
+    }
+
+    private void exportSnapshot(Tokens tokens) {
+        // export_snapshot <file>
+        Path file = resolveDataFile(tokens.get(1));
+        if (file == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            long rows = Snapshot.export(file);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            out.println("Exported " + rows + " row(s) in " + elapsedMillis + " ms");
+        } catch (IOException e) {
+            out.println("Error occurred when writing the snapshot file");
+            e.printStackTrace();
+        } catch (SQLException e) {
+            out.println("Error occurred when exporting the snapshot");
+            e.printStackTrace();
+        }
+    }
+
+    private void importSnapshot(Tokens tokens) {
+        // import_snapshot <file>
+        // only into an empty database, so there is nobody to log in as yet
+        Path file = resolveDataFile(tokens.get(1));
+        if (file == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            long rows = Snapshot.restore(file);
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            out.println("Imported " + rows + " row(s) in " + elapsedMillis + " ms");
+        } catch (IllegalStateException e) {
+            out.println(e.getMessage());
+        } catch (IOException e) {
+            out.println("Error occurred when reading the snapshot file");
+            e.printStackTrace();
+        } catch (SQLException e) {
+            out.println("Error occurred when importing the snapshot");
+            e.printStackTrace();
+        }
+    }
+
+    // The file in the data directory, or null after printing why the name isn't allowed
+    private Path resolveDataFile(String name) {
+        try {
+            return Util.resolveDataFile(name);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            return null;
+        }
+    }
+
+    private void showAppointments(Tokens tokens) {
+        // show_appointments [after_id] [limit] [start_date] [end_date]
+        // the numbers come first, the dates after them, and every one of them is optional
+        int[] numbers = {0, DEFAULT_PAGE_SIZE};
+        Date[] dates = new Date[2];
+        int i = 1;
+        try {
+            for (int n = 0; n < numbers.length && i < tokens.size() && tokens.get(i).indexOf('-') < 0; n++) {
+                numbers[n] = Integer.parseInt(tokens.get(i++));
+            }
+            for (int d = 0; d < dates.length && i < tokens.size(); d++) {
+                dates[d] = Date.valueOf(tokens.get(i++));
+            }
+        } catch (IllegalArgumentException e) {
+            out.println("Please enter an appointment id, a limit and dates like 2022-01-31!");
+            return;
+        }
+        if (i < tokens.size() || numbers[0] < 0 || numbers[1] <= 0 || numbers[1] > MAX_PAGE_SIZE) {
+            out.println("Please enter an appointment id, a limit of at most " + MAX_PAGE_SIZE +
+                    " and dates like 2022-01-31!");
+            return;
+        }
+        AppointmentQuery query = new AppointmentQuery(numbers[0], numbers[1], dates[0], dates[1]);
+
+        // rows are printed as they arrive, only the last id is kept for the next page
+        int[] lastId = {query.getAfterId()};
+        int shown;
+        try {
+            if (currentCaregiver != null) {
+                shown = Appointment.forEachOfCaregiver(currentCaregiver.getUsername(), query, a -> {
+                    out.println("Appointment id: " + a.getAppointmentId() + ", Vaccine Name: " + a.getVaccineName() +
+                            ", Date: " + a.getTime() + ", Patient Name: " + a.getPatientName());
+                    lastId[0] = a.getAppointmentId();
+                });
+            } else {
+                shown = Appointment.forEachOfPatient(currentPatient.getUsername(), query, a -> {
+                    out.println("Appointment id: " + a.getAppointmentId() + ", Vaccine Name: " + a.getVaccineName() +
+                            ", Date: " + a.getTime() + ", Caregiver Name: " + a.getCaregiverName());
+                    lastId[0] = a.getAppointmentId();
+                });
+            }
+        } catch (SQLException e) {
+            out.println("Please try again!");
+            e.printStackTrace();
+            return;
+        }
+        if (shown == query.getLimit()) {
+            StringBuilder next = new StringBuilder("More appointments: show_appointments ")
+                    .append(lastId[0]).append(' ').append(query.getLimit());
+            for (Date d : dates) {
+                if (d != null) {
+                    next.append(' ').append(d);
+                }
+            }
+            out.println(next);
+        }
+    }
+
+    private void stats(Tokens tokens) {
+        // stats
+        Metrics.report(out);
+    }
+
+    private void logout(Tokens tokens) {
+        // logout
+        currentCaregiver = null;
+        currentPatient = null;
+        out.println("Successfully logged out!");
+    }
+
+    private void quit(Tokens tokens) {
+        // quit
+        out.println("Bye!");
+        running = false;
+    }
+}
@@ -0,0 +1,321 @@
+package scheduler.batch;
+
+import scheduler.Session;
+import scheduler.command.Command;
+import scheduler.command.Tokens;
+import scheduler.metrics.Metrics;
+import scheduler.metrics.Timer;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Vaccine;
+import scheduler.util.Util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs a file of scheduler commands, one per line. Runs of consecutive create_patient, create_caregiver,
+// upload_availability or add_doses commands are sent to the database together (a JDBC batch in one transaction,
+// or a single multi-row insert for availability) instead of one round trip per line; every other command runs
+// through the session as it would interactively.
+// Blank lines and lines starting with '#' are skipped.
+public class BatchRunner {
+
+    // most commands sent in a single executeBatch()
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final Session session;
+    private final PrintStream out;
+    private final Tokens tokens = new Tokens();
+
+    private Group pending = null;
+    private int commands = 0;
+    private int batchedCommands = 0;
+    private int batches = 0;
+    private int failures = 0;
+
+    public BatchRunner(Session session) {
+        this.session = session;
+        this.out = session.getOut();
+    }
+
+    // Run every command from the reader, then print a summary. Stops early at quit.
+    public void run(BufferedReader reader) throws IOException {
+        long start = System.nanoTime();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            tokens.reset(line);
+            if (tokens.size() == 0 || tokens.get(0).startsWith("#")) {
+                continue;
+            }
+            commands++;
+            if (!submit()) {
+                break;
+            }
+        }
+        flush();
+        long elapsedMillis = Math.max((System.nanoTime() - start) / 1_000_000, 1);
+        out.println("Ran " + commands + " commands in " + elapsedMillis + " ms (" +
+                (commands * 1000L / elapsedMillis) + " commands/s), " + batchedCommands + " of them in " +
+                batches + " batches, " + failures + " batched commands failed");
+    }
+
+    // Queue or run the current command. Returns false once the session has quit.
+    private boolean submit() {
+        Command<Session> command = Session.getCommands().lookup(tokens);
+        Group group = command == null ? null : newGroup(command.getName(), tokens);
+        if (group == null) {
+            flush();
+            return session.execute(tokens);
+        }
+        if (pending != null && !pending.getClass().equals(group.getClass())) {
+            flush();
+        }
+        if (!session.authorize(command, tokens)) {
+            failures++;
+            return true;
+        }
+        if (pending == null) {
+            pending = group;
+        }
+        if (pending.add(tokens)) {
+            batchedCommands++;
+        } else {
+            failures++;
+        }
+        if (pending.size() >= MAX_BATCH_SIZE) {
+            flush();
+        }
+        return true;
+    }
+
+    private void flush() {
+        if (pending == null) {
+            return;
+        }
+        Group group = pending;
+        pending = null;
+        if (group.size() > 0) {
+            batches++;
+            // timed as batch.<command>, failed if any of its calls failed
+            Timer timer = Metrics.timer("batch." + group.getName());
+            long errors = Metrics.getErrorsOnThisThread();
+            long start = timer.start();
+            group.flush();
+            if (Metrics.getErrorsOnThisThread() != errors) {
+                timer.fail(start);
+            } else {
+                timer.stop(start);
+            }
+        }
+    }
+
+    private Group newGroup(String name, Tokens tokens) {
+        switch (name) {
+            case "create_patient":
+                return new CreatePatients();
+            case "create_caregiver":
+                return new CreateCaregivers();
+            case "upload_availability":
+                // a date range is already a single insert, only single dates are grouped
+                return tokens.size() == 2 ? new UploadAvailability() : null;
+            case "add_doses":
+                return new AddDoses();
+            default:
+                return null;
+        }
+    }
+
+    // A run of batchable commands of one kind
+    private abstract static class Group {
+        private final String name;
+
+        Group(String name) {
+            this.name = name;
+        }
+
+        // the command this group runs
+        String getName() {
+            return name;
+        }
+
+        // Queue a command, returns false (after printing why) if it can't be run
+        abstract boolean add(Tokens tokens);
+
+        abstract int size();
+
+        // Send the queued commands and print one result per command
+        abstract void flush();
+    }
+
+    private class CreatePatients extends Group {
+        private final List<Patient> patients = new ArrayList<>();
+
+        CreatePatients() {
+            super("create_patient");
+        }
+
+        boolean add(Tokens tokens) {
+            try {
+                byte[] salt = Util.generateSalt();
+                byte[] hash = Util.generateHash(tokens.get(2), salt);
+                patients.add(new Patient.PatientBuilder(tokens.get(1), salt, hash).build());
+                return true;
+            } catch (IllegalStateException e) {
+                out.println("Failed to create user.");
+                return false;
+            }
+        }
+
+        int size() {
+            return patients.size();
+        }
+
+        void flush() {
+            try {
+                boolean[] inserted = Patient.saveAllToDB(patients);
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i]) {
+                        session.setCurrentPatient(patients.get(i));
+                        out.println("Created user " + patients.get(i).getUsername());
+                    } else {
+                        failures++;
+                        out.println("Username taken, try again!");
+                    }
+                }
+            } catch (SQLException e) {
+                failAll(patients.size(), "Failed to create user.", e);
+            }
+        }
+    }
+
+    private class CreateCaregivers extends Group {
+        private final List<Caregiver> caregivers = new ArrayList<>();
+
+        CreateCaregivers() {
+            super("create_caregiver");
+        }
+
+        boolean add(Tokens tokens) {
+            try {
+                byte[] salt = Util.generateSalt();
+                byte[] hash = Util.generateHash(tokens.get(2), salt);
+                caregivers.add(new Caregiver.CaregiverBuilder(tokens.get(1), salt, hash).build());
+                return true;
+            } catch (IllegalStateException e) {
+                out.println("Failed to create user.");
+                return false;
+            }
+        }
+
+        int size() {
+            return caregivers.size();
+        }
+
+        void flush() {
+            try {
+                boolean[] inserted = Caregiver.saveAllToDB(caregivers);
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i]) {
+                        session.setCurrentCaregiver(caregivers.get(i));
+                        out.println("Created user " + caregivers.get(i).getUsername());
+                    } else {
+                        failures++;
+                        out.println("Username taken, try again!");
+                    }
+                }
+            } catch (SQLException e) {
+                failAll(caregivers.size(), "Failed to create user.", e);
+            }
+        }
+    }
+
+    private class UploadAvailability extends Group {
+        private final List<Date> dates = new ArrayList<>();
+
+        UploadAvailability() {
+            super("upload_availability");
+        }
+
+        boolean add(Tokens tokens) {
+            try {
+                dates.add(Date.valueOf(tokens.get(1)));
+                return true;
+            } catch (IllegalArgumentException e) {
+                out.println("Please enter a valid date!");
+                return false;
+            }
+        }
+
+        int size() {
+            return dates.size();
+        }
+
+        void flush() {
+            try {
+                boolean[] inserted = session.getCurrentCaregiver().uploadAvailability(dates);
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i]) {
+                        out.println("Availability uploaded!");
+                    } else {
+                        failures++;
+                        out.println("Availability already uploaded for " + dates.get(i));
+                    }
+                }
+            } catch (SQLException e) {
+                failAll(dates.size(), "Error occurred when uploading availability", e);
+            }
+        }
+    }
+
+    private class AddDoses extends Group {
+        private final List<Vaccine> deltas = new ArrayList<>();
+
+        AddDoses() {
+            super("add_doses");
+        }
+
+        boolean add(Tokens tokens) {
+            int doses;
+            try {
+                doses = Integer.parseInt(tokens.get(2));
+            } catch (NumberFormatException e) {
+                out.println("Please enter a valid number!");
+                return false;
+            }
+            if (doses <= 0) {
+                out.println("Please enter a valid number!");
+                return false;
+            }
+            deltas.add(new Vaccine.VaccineBuilder(tokens.get(1), doses).build());
+            return true;
+        }
+
+        int size() {
+            return deltas.size();
+        }
+
+        void flush() {
+            try {
+                Vaccine.addAllDoses(deltas);
+                for (int i = 0; i < deltas.size(); i++) {
+                    out.println("Doses updated!");
+                }
+            } catch (SQLException e) {
+                failAll(deltas.size(), "Error occurred when adding doses", e);
+            }
+        }
+    }
+
+    private void failAll(int count, String message, SQLException e) {
+        for (int i = 0; i < count; i++) {
+            out.println(message);
+        }
+        failures += count;
+        e.printStackTrace();
+    }
+}
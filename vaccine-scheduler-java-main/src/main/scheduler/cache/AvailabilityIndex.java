@@ -0,0 +1,254 @@
+package scheduler.cache;
+
+import scheduler.storage.Storages;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-process copy of the free caregiver slots, so that schedule searches don't have to query the database. It is
+// loaded from storage on first use and then kept up to date by the code that changes Availabilities in this
+// process. Doses come from the DoseInventory.
+//
+// Caregivers are interned to dense int ids, and the free slots are kept twice as bitmaps: per day, a BitSet of the
+// ids free that day ("who is free on D" scans one bit per caregiver), and per caregiver, a DayBitmap of the days
+// they are free ("which days is C free this quarter" scans one bit per day).
+public class AvailabilityIndex {
+
+    private static volatile AvailabilityIndex instance = null;
+
+    // caregiver username <-> id
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> usernames = new ArrayList<>();
+    // epoch day -> ids of the caregivers with a free slot that day; days with none are removed
+    private final TreeMap<Long, BitSet> freeByDay = new TreeMap<>();
+    // id -> the caregiver's free days
+    private final List<DayBitmap> freeDays = new ArrayList<>();
+    // searches share the read lock, the changes below take the write lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private AvailabilityIndex() {
+    }
+
+    // Return the index, loading it from the database the first time it is needed. The index is published before
+    // it is loaded, with its write lock held until the load is done: searches wait for the load, and a change
+    // committed meanwhile is applied after it (applying one the load already saw changes nothing).
+    public static AvailabilityIndex getInstance() throws SQLException {
+        AvailabilityIndex index = instance;
+        if (index == null) {
+            synchronized (AvailabilityIndex.class) {
+                if (instance == null) {
+                    AvailabilityIndex loading = new AvailabilityIndex();
+                    loading.lock.writeLock().lock();
+                    instance = loading;
+                    try {
+                        loading.load();
+                    } catch (SQLException e) {
+                        instance = null;
+                        throw e;
+                    } finally {
+                        loading.lock.writeLock().unlock();
+                    }
+                }
+                index = instance;
+            }
+        }
+        return index;
+    }
+
+    // Drop the index so that the next search reloads it from the database
+    public static synchronized void invalidate() {
+        instance = null;
+    }
+
+    // The methods below apply a change that has already been committed to the database. They do nothing if the
+    // index has not been loaded yet, since the load will pick the change up.
+    //
+    // The hooks of two changes to the same slot can run in either order, whatever order the changes committed
+    // in. A slot being booked is applied as is, but the other changes are read back from storage instead: e.g. a
+    // release's hook may run after a reservation or cancel_day already took the slot again, and adding the slot
+    // blindly would offer a dead slot until the next restart. The read is done under the write lock, so a change
+    // committed after it is applied after it too.
+
+    public static void slotPublished(Date d, String caregiver) {
+        refresh(caregiver, d, d);
+    }
+
+    // The dates one upload published, read back in one query
+    public static void slotsPublished(String caregiver, List<Date> dates) {
+        if (!dates.isEmpty()) {
+            refresh(caregiver, Collections.min(dates), Collections.max(dates));
+        }
+    }
+
+    public static void slotBooked(Date d, String caregiver) {
+        AvailabilityIndex index = instance;
+        if (index != null) {
+            index.lock.writeLock().lock();
+            try {
+                index.removeSlot(toKey(d), caregiver);
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public static void slotReleased(Date d, String caregiver) {
+        refresh(caregiver, d, d);
+    }
+
+    // cancel_day covers a range of days, which one query reads back as well as one
+    public static void slotsWithdrawn(String caregiver, Date from, Date to) {
+        refresh(caregiver, from, to);
+    }
+
+    // Replace the caregiver's free days from one date to another with the ones storage has. If storage can't be
+    // read the index is dropped, to be loaded again by the next search.
+    private static void refresh(String caregiver, Date from, Date to) {
+        AvailabilityIndex index = instance;
+        if (index == null) {
+            return;
+        }
+        index.lock.writeLock().lock();
+        try {
+            List<Long> free = new ArrayList<>();
+            Storages.get().availabilities().forEachFreeOf(caregiver, from, to, d -> free.add(toKey(d)));
+            for (long key = toKey(from); key <= toKey(to); key++) {
+                index.removeSlot(key, caregiver);
+            }
+            for (long key : free) {
+                index.addSlot(key, caregiver);
+            }
+        } catch (SQLException e) {
+            System.out.println("Error occurred when refreshing the availability index");
+            e.printStackTrace();
+            synchronized (AvailabilityIndex.class) {
+                if (instance == index) {
+                    instance = null;
+                }
+            }
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    // Caregivers with a free slot on the given date, in username order
+    public List<String> getAvailableCaregivers(Date d) {
+        List<String> caregivers = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet free = freeByDay.get(toKey(d));
+            if (free == null) {
+                return caregivers;
+            }
+            for (int id = free.nextSetBit(0); id >= 0; id = free.nextSetBit(id + 1)) {
+                caregivers.add(usernames.get(id));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Collections.sort(caregivers);
+        return caregivers;
+    }
+
+    // Number of caregivers with a free slot on the given date
+    public int getAvailableCount(Date d) {
+        lock.readLock().lock();
+        try {
+            BitSet free = freeByDay.get(toKey(d));
+            return free == null ? 0 : free.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of free caregivers for every date in [from, to] that has at least one, in date order
+    public SortedMap<LocalDate, Integer> getAvailableDates(Date from, Date to) {
+        SortedMap<LocalDate, Integer> result = new TreeMap<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<Long, BitSet> entry : freeByDay.subMap(toKey(from), true, toKey(to), true).entrySet()) {
+                result.put(LocalDate.ofEpochDay(entry.getKey()), entry.getValue().cardinality());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    // The dates in [from, to] on which the caregiver has a free slot, in date order
+    public List<LocalDate> getFreeDays(String caregiver, Date from, Date to) {
+        List<LocalDate> days = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Integer id = ids.get(caregiver);
+            if (id != null) {
+                freeDays.get(id).forEach(toKey(from), toKey(to), day -> days.add(LocalDate.ofEpochDay(day)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return days;
+    }
+
+    // Remaining doses for every vaccine, in name order
+    public SortedMap<String, Integer> getDoses() throws SQLException {
+        return DoseInventory.getInstance().getDoses();
+    }
+
+    // Remaining doses of one vaccine, or null if there is no such vaccine
+    public Integer getDoses(String vaccine) throws SQLException {
+        return DoseInventory.getInstance().getDoses(vaccine);
+    }
+
+    private void load() throws SQLException {
+        // called with the write lock held
+        Storages.get().availabilities().forEachFree((d, caregiver) -> addSlot(toKey(d), caregiver));
+    }
+
+    private void addSlot(long key, String caregiver) {
+        int id = intern(caregiver);
+        freeByDay.computeIfAbsent(key, k -> new BitSet()).set(id);
+        freeDays.get(id).add(key);
+    }
+
+    private void removeSlot(long key, String caregiver) {
+        Integer id = ids.get(caregiver);
+        if (id == null) {
+            return;
+        }
+        BitSet free = freeByDay.get(key);
+        if (free != null) {
+            free.clear(id);
+            if (free.isEmpty()) {
+                freeByDay.remove(key);
+            }
+        }
+        freeDays.get(id).remove(key);
+    }
+
+    private int intern(String caregiver) {
+        Integer id = ids.get(caregiver);
+        if (id == null) {
+            id = usernames.size();
+            ids.put(caregiver, id);
+            usernames.add(caregiver);
+            freeDays.add(new DayBitmap());
+        }
+        return id;
+    }
+
+    private static long toKey(Date d) {
+        return d.toLocalDate().toEpochDay();
+    }
+}
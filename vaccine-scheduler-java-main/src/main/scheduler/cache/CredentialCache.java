@@ -0,0 +1,177 @@
+package scheduler.cache;
+
+import scheduler.model.Credentials;
+import scheduler.util.Util;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// A size-bounded, least-recently-used cache of login credentials by username. Usernames that don't exist are
+// cached too (for a shorter time), so a flood of logins for made-up names doesn't turn into a flood of queries.
+// Entries expire after a TTL so that changes made by other processes are eventually seen.
+//
+// Sizes and TTLs come from the CredentialCacheSize, CredentialCacheTtlSeconds and
+// CredentialCacheNegativeTtlSeconds environment variables.
+public class CredentialCache {
+
+    public interface Loader {
+        // Read a user's credentials from the database, or return null if there is no such user
+        Credentials load(String username) throws SQLException;
+    }
+
+    private final String name;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final Loader loader;
+    private final LinkedHashMap<String, Entry> entries;
+    // bumped by every put and invalidation; guarded by entries
+    private long writes = 0;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CredentialCache(String name, int maxSize, long ttlMillis, long negativeTtlMillis, Loader loader) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.loader = loader;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > CredentialCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // A cache configured from the environment
+    public static CredentialCache fromEnv(String name, Loader loader) {
+        return new CredentialCache(name,
+                Util.getEnvInt("CredentialCacheSize", 10000),
+                Util.getEnvInt("CredentialCacheTtlSeconds", 300) * 1000L,
+                Util.getEnvInt("CredentialCacheNegativeTtlSeconds", 30) * 1000L,
+                loader);
+    }
+
+    // The user's credentials, or null if there is no such user
+    public Credentials get(String username) throws SQLException {
+        long now = System.currentTimeMillis();
+        long writesBefore;
+        synchronized (entries) {
+            writesBefore = writes;
+            Entry entry = entries.get(username);
+            if (entry != null && entry.expiresAt > now) {
+                if (entry.credentials == null) {
+                    negativeHits.increment();
+                } else {
+                    hits.increment();
+                }
+                return entry.credentials;
+            }
+        }
+        misses.increment();
+        // load outside the lock so that one slow query doesn't hold up every other login
+        Credentials credentials = loader.load(username);
+        synchronized (entries) {
+            // a put or invalidation while loading may be newer than what was read, e.g. a "no such user" read
+            // racing the user's creation, so the load is only cached if nothing was written in the meantime
+            if (writes == writesBefore) {
+                install(username, credentials);
+            }
+        }
+        return credentials;
+    }
+
+    public boolean exists(String username) throws SQLException {
+        return get(username) != null;
+    }
+
+    // Record credentials that were just written to the database; null records that the user doesn't exist. This
+    // always replaces what a concurrent get is loading.
+    public void put(String username, Credentials credentials) {
+        synchronized (entries) {
+            writes++;
+            install(username, credentials);
+        }
+    }
+
+    public void invalidate(String username) {
+        synchronized (entries) {
+            writes++;
+            entries.remove(username);
+        }
+    }
+
+    // Forget everything, e.g. after switching to a different storage
+    public void invalidateAll() {
+        synchronized (entries) {
+            writes++;
+            entries.clear();
+        }
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getNegativeHits() {
+        return negativeHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CredentialCache{" +
+                "name='" + name + '\'' +
+                ", size=" + size() +
+                ", hits=" + getHits() +
+                ", negativeHits=" + getNegativeHits() +
+                ", misses=" + getMisses() +
+                ", evictions=" + getEvictions() +
+                '}';
+    }
+
+    // Called with the entries lock held
+    private void install(String username, Credentials credentials) {
+        long expiresAt = System.currentTimeMillis() + (credentials == null ? negativeTtlMillis : ttlMillis);
+        entries.put(username, new Entry(credentials, expiresAt));
+    }
+
+    private static class Entry {
+        // null for a username that doesn't exist
+        private final Credentials credentials;
+        private final long expiresAt;
+
+        private Entry(Credentials credentials, long expiresAt) {
+            this.credentials = credentials;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package scheduler.cache;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+// A set of epoch days as a bitmap of 64-day words. The words start at the earliest day the set has held, so a
+// caregiver who publishes a quarter of dates costs two words however far from 1970 those dates are. Not
+// thread-safe; AvailabilityIndex guards it.
+class DayBitmap {
+
+    // the word holding words[0], i.e. floorDiv(day, 64) of its first day
+    private long firstWord = 0;
+    private long[] words = new long[0];
+
+    void add(long day) {
+        long word = Math.floorDiv(day, 64);
+        ensure(word);
+        words[(int) (word - firstWord)] |= 1L << Math.floorMod(day, 64);
+    }
+
+    void remove(long day) {
+        int i = (int) (Math.floorDiv(day, 64) - firstWord);
+        if (i >= 0 && i < words.length) {
+            words[i] &= ~(1L << Math.floorMod(day, 64));
+        }
+    }
+
+    // Pass every day from one to another (inclusive) that is in the set to the consumer, earliest first
+    void forEach(long from, long to, LongConsumer consumer) {
+        long first = Math.max(Math.floorDiv(from, 64), firstWord);
+        long last = Math.min(Math.floorDiv(to, 64), firstWord + words.length - 1);
+        for (long word = first; word <= last; word++) {
+            long bits = words[(int) (word - firstWord)];
+            while (bits != 0) {
+                long day = word * 64 + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (day >= from && day <= to) {
+                    consumer.accept(day);
+                }
+            }
+        }
+    }
+
+    private void ensure(long word) {
+        if (words.length == 0) {
+            firstWord = word;
+            words = new long[1];
+        } else if (word < firstWord) {
+            long[] grown = new long[(int) (firstWord - word) + words.length];
+            System.arraycopy(words, 0, grown, (int) (firstWord - word), words.length);
+            words = grown;
+            firstWord = word;
+        } else if (word >= firstWord + words.length) {
+            words = Arrays.copyOf(words, (int) (word - firstWord) + 1);
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package scheduler.cache;
+
+import scheduler.journal.Journal;
+import scheduler.journal.JournalEntry;
+import scheduler.storage.Storages;
+import scheduler.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Remaining doses per vaccine, held in memory. Reservations and add_doses change the counters with
+// compare-and-set instead of a read-modify-write against the database, so concurrent changes are never lost.
+// The changes are written behind: every DoseFlushMillis (and at shutdown) the net change per vaccine is applied
+// with one "Doses = Doses + ?" update, however many commands produced it.
+//
+// Changes not yet flushed are lost if the process dies, unless JournalDir is set: then every change is first
+// appended to a local journal (see scheduler.journal) and acknowledged once it is on the local disk, and the
+// flush applies the journal's records in order, recording the last one applied in the same transaction. Records
+// the database doesn't have yet are applied after a restart, and never twice. Dose changes then keep working
+// while the database can't be reached. Either way the counters are only authoritative when a single process owns
+// the Vaccines table.
+public class DoseInventory {
+
+    // journal records applied per database transaction
+    private static final int FLUSH_RECORDS = 10000;
+    // a journal segment is mapped whole, and a mapping can't reach 2GB
+    private static final int MAX_SEGMENT_MB = 1024;
+
+    private static DoseInventory instance = null;
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Object flushLock = new Object();
+    // null unless JournalDir is set
+    private final Journal journal;
+    // the last journal record in the database; guarded by flushLock
+    private long appliedSeq = 0;
+
+    private DoseInventory(long flushMillis, Journal journal) {
+        this.journal = journal;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dose-inventory-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Return the inventory, loading every vaccine from the database the first time it is needed
+    public static synchronized DoseInventory getInstance() throws SQLException {
+        if (instance == null) {
+            DoseInventory inventory = new DoseInventory(Util.getEnvInt("DoseFlushMillis", 1000), openJournal());
+            inventory.loadAll();
+            instance = inventory;
+        }
+        return instance;
+    }
+
+    // Flush outstanding changes and stop the timer, called when the application exits. Also called after the
+    // Vaccines table was replaced, e.g. by import_snapshot; the next getInstance loads it again.
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.flusher.shutdownNow();
+            instance.flushQuietly();
+            if (instance.journal != null) {
+                instance.journal.close();
+            }
+            instance = null;
+        }
+    }
+
+    // Remaining doses of a vaccine, or null if there is no such vaccine
+    public Integer getDoses(String vaccine) throws SQLException {
+        Counter counter = counter(vaccine);
+        return counter == null ? null : counter.available.get();
+    }
+
+    // Remaining doses of every vaccine, in name order
+    public SortedMap<String, Integer> getDoses() {
+        SortedMap<String, Integer> doses = new TreeMap<>();
+        counters.forEach((name, counter) -> doses.put(name, counter.available.get()));
+        return doses;
+    }
+
+    // Register a vaccine that was just inserted into the Vaccines table
+    public void created(String vaccine, int doses) {
+        counters.putIfAbsent(vaccine, new Counter(doses));
+    }
+
+    // Add doses to an existing vaccine and return the new count, or null if there is no such vaccine
+    public Integer addDoses(String vaccine, int num) throws SQLException {
+        Counter counter = counter(vaccine);
+        if (counter == null) {
+            return null;
+        }
+        try {
+            record(counter, vaccine, num);
+        } catch (IOException e) {
+            throw new SQLException("Could not write the journal", e);
+        }
+        return counter.available.addAndGet(num);
+    }
+
+    // Take doses, e.g. one for a reservation, and return the new count. Throws IllegalStateException with a
+    // user-facing message if the vaccine doesn't exist or doesn't have that many doses left.
+    public int takeDoses(String vaccine, int num) throws SQLException {
+        Counter counter = counter(vaccine);
+        if (counter == null) {
+            throw new IllegalStateException("No such vaccine exists!");
+        }
+        while (true) {
+            int available = counter.available.get();
+            if (available < num) {
+                throw new IllegalStateException("Not enough available doses!");
+            }
+            if (counter.available.compareAndSet(available, available - num)) {
+                try {
+                    record(counter, vaccine, -num);
+                } catch (IOException e) {
+                    counter.available.addAndGet(num);
+                    throw new IllegalStateException("Could not save the change, please try again!");
+                }
+                return available - num;
+            }
+        }
+    }
+
+    // Give back doses taken for a reservation that didn't go through
+    public void returnDoses(String vaccine, int num) {
+        Counter counter = counters.get(vaccine);
+        if (counter == null) {
+            return;
+        }
+        try {
+            record(counter, vaccine, num);
+        } catch (IOException e) {
+            // the taking is in the journal but the giving back isn't, so the doses stay taken
+            System.out.println("Error occurred when returning " + num + " dose(s) of " + vaccine);
+            e.printStackTrace();
+            return;
+        }
+        counter.available.addAndGet(num);
+    }
+
+    // Count doses that were already given back in the Vaccines table itself, e.g. by a cancellation's transaction
+    public void restored(String vaccine, int num) {
+        Counter counter = counters.get(vaccine);
+        if (counter != null) {
+            counter.available.addAndGet(num);
+        }
+    }
+
+    // Write the net change of every vaccine to the database in one batch
+    public void flush() throws SQLException {
+        synchronized (flushLock) {
+            if (journal != null) {
+                flushJournal();
+                return;
+            }
+            Map<String, Long> deltas = new HashMap<>();
+            counters.forEach((name, counter) -> {
+                long delta = counter.pending.getAndSet(0);
+                if (delta != 0) {
+                    deltas.put(name, delta);
+                }
+            });
+            if (deltas.isEmpty()) {
+                return;
+            }
+
+            try {
+                Storages.get().vaccines().addDoses(deltas);
+            } catch (SQLException e) {
+                // keep the changes so the next flush retries them
+                deltas.forEach((name, delta) -> counters.get(name).pending.addAndGet(delta));
+                throw e;
+            }
+        }
+    }
+
+    // Apply the journal's records that the database doesn't have yet, FLUSH_RECORDS per transaction
+    private void flushJournal() throws SQLException {
+        while (true) {
+            List<JournalEntry> entries = journal.read(appliedSeq, FLUSH_RECORDS);
+            if (entries.isEmpty()) {
+                return;
+            }
+            Map<String, Long> deltas = new HashMap<>();
+            for (JournalEntry entry : entries) {
+                Change change = Change.decode(entry.getPayload());
+                deltas.merge(change.vaccine, change.delta, Long::sum);
+            }
+            long last = entries.get(entries.size() - 1).getSeq();
+            if (!Storages.get().vaccines().addDoses(deltas, journal.getId(), appliedSeq, last)) {
+                // the database is somewhere else in the journal, e.g. a flush ran before loadAll; go on from there
+                appliedSeq = Storages.get().vaccines().findAppliedSeq(journal.getId());
+                continue;
+            }
+            appliedSeq = last;
+            journal.truncate(last);
+            if (entries.size() < FLUSH_RECORDS) {
+                return;
+            }
+        }
+    }
+
+    // Record a change to be written to the database: in the journal if there is one, otherwise in the counter
+    private void record(Counter counter, String vaccine, long delta) throws IOException {
+        if (journal != null) {
+            journal.append(new Change(vaccine, delta).encode());
+        } else {
+            counter.pending.addAndGet(delta);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            System.out.println("Error occurred when writing dose changes, will retry");
+            e.printStackTrace();
+        }
+    }
+
+    // The counter of a vaccine, looking the vaccine up in the database if another process may have created it
+    private Counter counter(String vaccine) throws SQLException {
+        Counter counter = counters.get(vaccine);
+        if (counter != null) {
+            return counter;
+        }
+        Integer doses = load(vaccine);
+        if (doses == null) {
+            return null;
+        }
+        counters.putIfAbsent(vaccine, new Counter(doses));
+        return counters.get(vaccine);
+    }
+
+    private void loadAll() throws SQLException {
+        synchronized (flushLock) {
+            if (journal != null) {
+                // read before the doses, so that records applied in between are counted once either way
+                appliedSeq = Storages.get().vaccines().findAppliedSeq(journal.getId());
+            }
+            Storages.get().vaccines().findAll().forEach((name, doses) -> counters.put(name, new Counter(doses)));
+            if (journal != null) {
+                // changes acknowledged before a restart that the database doesn't have yet
+                for (JournalEntry entry : journal.read(appliedSeq, Integer.MAX_VALUE)) {
+                    Change change = Change.decode(entry.getPayload());
+                    Counter counter = counters.get(change.vaccine);
+                    if (counter != null) {
+                        counter.available.addAndGet((int) change.delta);
+                    }
+                }
+            }
+        }
+    }
+
+    // The journal in JournalDir, or null if it isn't set
+    private static Journal openJournal() throws SQLException {
+        String dir = System.getenv("JournalDir");
+        if (dir == null || dir.trim().isEmpty()) {
+            return null;
+        }
+        int segmentMB = Util.getEnvInt("JournalSegmentMB", 4);
+        if (segmentMB < 1 || segmentMB > MAX_SEGMENT_MB) {
+            System.out.println("Ignoring invalid value for JournalSegmentMB: " + segmentMB);
+            segmentMB = 4;
+        }
+        try {
+            return Journal.open(Paths.get(dir.trim()), (long) segmentMB << 20);
+        } catch (IOException e) {
+            throw new SQLException("Could not open the journal in " + dir, e);
+        }
+    }
+
+    private Integer load(String vaccine) throws SQLException {
+        return Storages.get().vaccines().findDoses(vaccine);
+    }
+
+    // One journal record: a change to a vaccine's doses
+    private static class Change {
+        private final String vaccine;
+        private final long delta;
+
+        private Change(String vaccine, long delta) {
+            this.vaccine = vaccine;
+            this.delta = delta;
+        }
+
+        private byte[] encode() throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeUTF(vaccine);
+                out.writeLong(delta);
+            }
+            return bytes.toByteArray();
+        }
+
+        private static Change decode(byte[] payload) {
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+                return new Change(in.readUTF(), in.readLong());
+            } catch (IOException e) {
+                // the journal checks every record's CRC, so this is a record written by something else
+                throw new IllegalStateException("Unreadable journal record", e);
+            }
+        }
+    }
+
+    private static class Counter {
+        // doses that can still be reserved
+        private final AtomicInteger available;
+        // change not yet written to the database, when there is no journal
+        private final AtomicLong pending = new AtomicLong();
+
+        private Counter(int available) {
+            this.available = new AtomicInteger(available);
+        }
+    }
+}
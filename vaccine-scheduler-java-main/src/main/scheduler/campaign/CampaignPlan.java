@@ -0,0 +1,60 @@
+package scheduler.campaign;
+
+import scheduler.model.Appointment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// What the planner decided: an appointment (without an id yet) for every patient it could place, and why each of
+// the others could not be placed
+public class CampaignPlan {
+    private final List<Appointment> planned;
+    private final List<Unassigned> unassigned;
+
+    CampaignPlan(List<Appointment> planned, List<Unassigned> unassigned) {
+        this.planned = planned;
+        this.unassigned = unassigned;
+    }
+
+    // Getters
+    public List<Appointment> getPlanned() {
+        return planned;
+    }
+
+    public List<Unassigned> getUnassigned() {
+        return unassigned;
+    }
+
+    // The plan without the appointments that could not be booked after all
+    CampaignPlan withBooked(boolean[] booked, String reason) {
+        List<Appointment> kept = new ArrayList<>(planned.size());
+        List<Unassigned> missed = new ArrayList<>(unassigned);
+        for (int i = 0; i < booked.length; i++) {
+            if (booked[i]) {
+                kept.add(planned.get(i));
+            } else {
+                missed.add(new Unassigned(planned.get(i).getPatientName(), reason));
+            }
+        }
+        return new CampaignPlan(kept, missed);
+    }
+
+    public static class Unassigned {
+        private final String patientName;
+        private final String reason;
+
+        Unassigned(String patientName, String reason) {
+            this.patientName = patientName;
+            this.reason = reason;
+        }
+
+        // Getters
+        public String getPatientName() {
+            return patientName;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
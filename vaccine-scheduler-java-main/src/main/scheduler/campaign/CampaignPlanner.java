@@ -0,0 +1,311 @@
+package scheduler.campaign;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.DoseInventory;
+import scheduler.campaign.CampaignPlan.Unassigned;
+import scheduler.command.Tokens;
+import scheduler.event.EventBus;
+import scheduler.model.Appointment;
+import scheduler.storage.Storages;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Assigns a whole campaign of patients to free slots at once instead of one reserve per patient.
+//
+// The free caregivers of every date come from the AvailabilityIndex and the doses from the DoseInventory. Dates are
+// walked in order and each date's slots go to the waiting patients whose windows end soonest (earliest deadline
+// first, which places as many patients as possible when every slot can serve every patient), each getting the
+// first vaccine of their preference that still has doses. Reading the slots and pairing patients with caregivers
+// is done per date in parallel on the fork/join pool; the walk itself is one pass over the sorted patients.
+//
+// The plan is then booked with AppointmentRepository.bookAll, one batched transaction for the whole campaign.
+public class CampaignPlanner {
+
+    // longest date window a single patient may give
+    public static final int MAX_WINDOW_DAYS = 366;
+    // longest span from the first start date to the last end date of a campaign; the planner works on every date
+    // in between
+    public static final int MAX_CAMPAIGN_DAYS = 2 * MAX_WINDOW_DAYS;
+    // dates a fork/join task handles without splitting further
+    private static final int DATES_PER_TASK = 16;
+
+    // Read a campaign, one patient per line: <patient> <vaccine>[,<vaccine>...] <start_date> <end_date>. Blank
+    // lines and lines starting with '#' are skipped. Throws IllegalArgumentException naming the first bad line.
+    public static List<CampaignRequest> read(BufferedReader reader) throws IOException {
+        List<CampaignRequest> requests = new ArrayList<>();
+        Tokens tokens = new Tokens();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            tokens.reset(line);
+            if (tokens.size() == 0 || tokens.get(0).startsWith("#")) {
+                continue;
+            }
+            try {
+                if (tokens.size() != 4) {
+                    throw new IllegalArgumentException();
+                }
+                Date from = Date.valueOf(tokens.get(2));
+                Date to = Date.valueOf(tokens.get(3));
+                long days = to.toLocalDate().toEpochDay() - from.toLocalDate().toEpochDay();
+                if (days < 0 || days >= MAX_WINDOW_DAYS) {
+                    throw new IllegalArgumentException();
+                }
+                requests.add(new CampaignRequest(requests.size(), tokens.get(0),
+                        Arrays.asList(tokens.get(1).split(",")), from, to));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + lineNumber + ": expected <patient> <vaccine>[,...] " +
+                        "<start_date> <end_date> with at most " + MAX_WINDOW_DAYS + " days");
+            }
+        }
+        return requests;
+    }
+
+    // Work out an assignment for the campaign without booking anything. Throws IllegalStateException with a
+    // user-facing message if the campaign spans more than MAX_CAMPAIGN_DAYS.
+    public CampaignPlan plan(List<CampaignRequest> requests) throws SQLException {
+        List<Unassigned> unassigned = new ArrayList<>();
+        Map<String, Integer> doses = new HashMap<>(DoseInventory.getInstance().getDoses());
+
+        // a patient is planned once, for their first line
+        long spanFrom = Long.MAX_VALUE;
+        long spanTo = Long.MIN_VALUE;
+        Set<String> listed = new HashSet<>();
+        List<CampaignRequest> unique = new ArrayList<>(requests.size());
+        List<String> usernames = new ArrayList<>(requests.size());
+        for (CampaignRequest request : requests) {
+            if (!listed.add(request.getPatientName())) {
+                unassigned.add(new Unassigned(request.getPatientName(), "Listed more than once"));
+                continue;
+            }
+            unique.add(request);
+            usernames.add(request.getPatientName());
+            spanFrom = Math.min(spanFrom, request.getFirstDay());
+            spanTo = Math.max(spanTo, request.getLastDay());
+        }
+        if (unique.isEmpty()) {
+            return new CampaignPlan(Collections.emptyList(), unassigned);
+        }
+        if (spanTo - spanFrom >= MAX_CAMPAIGN_DAYS) {
+            throw new IllegalStateException("A campaign's dates must span at most " + MAX_CAMPAIGN_DAYS + " days!");
+        }
+
+        // drop unknown patients and vaccines, and patients who already have an appointment in their window, up
+        // front in a few large queries
+        boolean[] exist = Storages.get().patients().exist(usernames);
+        Map<String, List<Date>> booked = new HashMap<>();
+        Storages.get().appointments().forEachOfPatients(usernames, toDate(spanFrom), toDate(spanTo),
+                (patient, time) -> booked.computeIfAbsent(patient, p -> new ArrayList<>()).add(time));
+        List<CampaignRequest> valid = new ArrayList<>(unique.size());
+        for (int i = 0; i < exist.length; i++) {
+            CampaignRequest request = unique.get(i);
+            Date appointment = firstWithin(booked.get(request.getPatientName()), request);
+            if (!exist[i]) {
+                unassigned.add(new Unassigned(request.getPatientName(), "No such patient"));
+            } else if (!doses.keySet().containsAll(request.getVaccineNames())) {
+                unassigned.add(new Unassigned(request.getPatientName(), "No such vaccine"));
+            } else if (appointment != null) {
+                unassigned.add(new Unassigned(request.getPatientName(), "Already has an appointment on " +
+                        appointment));
+            } else {
+                valid.add(request);
+            }
+        }
+        if (valid.isEmpty()) {
+            return new CampaignPlan(Collections.emptyList(), unassigned);
+        }
+
+        CampaignRequest[] byStart = valid.toArray(new CampaignRequest[0]);
+        Arrays.parallelSort(byStart, Comparator.comparingLong(CampaignRequest::getFirstDay)
+                .thenComparingInt(CampaignRequest::getSeq));
+        long firstDay = byStart[0].getFirstDay();
+        long lastDay = firstDay;
+        for (CampaignRequest request : byStart) {
+            lastDay = Math.max(lastDay, request.getLastDay());
+        }
+        int dayCount = (int) (lastDay - firstDay + 1);
+
+        // the free caregivers of every date, read in parallel
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        List<List<String>> caregivers = new ArrayList<>(Collections.nCopies(dayCount, null));
+        forEachDate(dayCount, d -> caregivers.set(d, index.getAvailableCaregivers(toDate(firstDay + d))));
+
+        // walk the dates, giving each date's slots to the patients whose windows end soonest
+        List<List<CampaignRequest>> assigned = new ArrayList<>(dayCount);
+        String[] vaccines = new String[requests.size()];
+        PriorityQueue<CampaignRequest> waiting = new PriorityQueue<>(
+                Comparator.comparingLong(CampaignRequest::getLastDay).thenComparingInt(CampaignRequest::getSeq));
+        int next = 0;
+        for (int d = 0; d < dayCount; d++) {
+            long day = firstDay + d;
+            while (next < byStart.length && byStart[next].getFirstDay() == day) {
+                waiting.add(byStart[next++]);
+            }
+            List<CampaignRequest> today = new ArrayList<>();
+            int slots = caregivers.get(d).size();
+            while (today.size() < slots && !waiting.isEmpty()) {
+                CampaignRequest request = waiting.poll();
+                if (request.getLastDay() < day) {
+                    unassigned.add(new Unassigned(request.getPatientName(), "No free caregiver from " +
+                            request.getFrom() + " to " + request.getTo()));
+                    continue;
+                }
+                String vaccine = takeDose(request, doses);
+                if (vaccine == null) {
+                    unassigned.add(new Unassigned(request.getPatientName(), "Not enough available doses"));
+                    continue;
+                }
+                vaccines[request.getSeq()] = vaccine;
+                today.add(request);
+            }
+            assigned.add(today);
+        }
+        for (CampaignRequest request : waiting) {
+            unassigned.add(new Unassigned(request.getPatientName(), "No free caregiver from " +
+                    request.getFrom() + " to " + request.getTo()));
+        }
+
+        // pair each date's patients with its caregivers in username order, in parallel
+        List<List<Appointment>> byDate = new ArrayList<>(Collections.nCopies(dayCount, null));
+        forEachDate(dayCount, d -> {
+            List<CampaignRequest> today = assigned.get(d);
+            List<Appointment> appointments = new ArrayList<>(today.size());
+            for (int i = 0; i < today.size(); i++) {
+                CampaignRequest request = today.get(i);
+                appointments.add(new Appointment.AppointmentBuilder(0, toDate(firstDay + d),
+                        request.getPatientName(), caregivers.get(d).get(i), vaccines[request.getSeq()]).build());
+            }
+            byDate.set(d, appointments);
+        });
+        List<Appointment> planned = new ArrayList<>();
+        for (List<Appointment> appointments : byDate) {
+            planned.addAll(appointments);
+        }
+        return new CampaignPlan(planned, unassigned);
+    }
+
+    // Plan the campaign and book it in one transaction. Throws IllegalStateException with a user-facing message
+    // if doses were taken by someone else while planning; nothing is booked in that case.
+    public CampaignPlan run(List<CampaignRequest> requests) throws SQLException {
+        CampaignPlan plan = plan(requests);
+        if (plan.getPlanned().isEmpty()) {
+            return plan;
+        }
+
+        // take the doses in memory first, as reserve does
+        Map<String, Integer> doses = new HashMap<>();
+        for (Appointment appointment : plan.getPlanned()) {
+            doses.merge(appointment.getVaccineName(), 1, Integer::sum);
+        }
+        DoseInventory inventory = DoseInventory.getInstance();
+        Map<String, Integer> taken = new HashMap<>();
+        try {
+            for (Map.Entry<String, Integer> entry : doses.entrySet()) {
+                inventory.takeDoses(entry.getKey(), entry.getValue());
+                taken.put(entry.getKey(), entry.getValue());
+            }
+        } catch (IllegalStateException e) {
+            taken.forEach(inventory::returnDoses);
+            throw new IllegalStateException("Doses changed while planning, please try again!");
+        }
+
+        boolean[] booked;
+        try {
+            booked = Storages.get().appointments().bookAll(plan.getPlanned());
+        } catch (SQLException e) {
+            taken.forEach(inventory::returnDoses);
+            throw e;
+        }
+        for (int i = 0; i < booked.length; i++) {
+            Appointment appointment = plan.getPlanned().get(i);
+            if (booked[i]) {
+                AvailabilityIndex.slotBooked(appointment.getTime(), appointment.getCaregiverName());
+                EventBus.appointmentBooked(appointment);
+            } else {
+                inventory.returnDoses(appointment.getVaccineName(), 1);
+            }
+        }
+        return plan.withBooked(booked, "The slot was taken while planning");
+    }
+
+    // The earliest of the dates within the request's window, or null if none is
+    private static Date firstWithin(List<Date> dates, CampaignRequest request) {
+        Date first = null;
+        if (dates != null) {
+            for (Date d : dates) {
+                if (!d.before(request.getFrom()) && !d.after(request.getTo()) && (first == null || d.before(first))) {
+                    first = d;
+                }
+            }
+        }
+        return first;
+    }
+
+    // The first vaccine of the patient's preference that has a dose left, taking that dose; null if none has
+    private static String takeDose(CampaignRequest request, Map<String, Integer> doses) {
+        for (String vaccine : request.getVaccineNames()) {
+            int left = doses.get(vaccine);
+            if (left > 0) {
+                doses.put(vaccine, left - 1);
+                return vaccine;
+            }
+        }
+        return null;
+    }
+
+    private interface DateTask {
+        void run(int d);
+    }
+
+    // Run the task for every date index below dayCount, splitting the dates across the fork/join pool
+    private static void forEachDate(int dayCount, DateTask task) {
+        ForkJoinPool.commonPool().invoke(new DateRange(0, dayCount, task));
+    }
+
+    private static class DateRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final DateTask task;
+
+        private DateRange(int from, int to, DateTask task) {
+            this.from = from;
+            this.to = to;
+            this.task = task;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= DATES_PER_TASK) {
+                for (int d = from; d < to; d++) {
+                    task.run(d);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new DateRange(from, middle, task), new DateRange(middle, to, task));
+        }
+    }
+
+    private static Date toDate(long epochDay) {
+        return Date.valueOf(LocalDate.ofEpochDay(epochDay));
+    }
+}
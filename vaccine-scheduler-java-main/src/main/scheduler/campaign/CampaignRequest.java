@@ -0,0 +1,56 @@
+package scheduler.campaign;
+
+import java.sql.Date;
+import java.util.List;
+
+// One patient of a campaign: the vaccines they will take, in order of preference, and the dates they can come
+public class CampaignRequest {
+    private final int seq;
+    private final String patientName;
+    private final List<String> vaccineNames;
+    private final Date from;
+    private final Date to;
+    // the dates as epoch days, which is what the planner works with
+    private final long firstDay;
+    private final long lastDay;
+
+    // seq is the request's position in the campaign, earlier requests win ties
+    public CampaignRequest(int seq, String patientName, List<String> vaccineNames, Date from, Date to) {
+        this.seq = seq;
+        this.patientName = patientName;
+        this.vaccineNames = vaccineNames;
+        this.from = from;
+        this.to = to;
+        this.firstDay = from.toLocalDate().toEpochDay();
+        this.lastDay = to.toLocalDate().toEpochDay();
+    }
+
+    // Getters
+    public int getSeq() {
+        return seq;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public List<String> getVaccineNames() {
+        return vaccineNames;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    long getFirstDay() {
+        return firstDay;
+    }
+
+    long getLastDay() {
+        return lastDay;
+    }
+}
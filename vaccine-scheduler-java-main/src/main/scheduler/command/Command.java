@@ -0,0 +1,116 @@
+package scheduler.command;
+
+// A named command with the number of arguments it takes, who may run it and the code that runs it.
+// S is the per-user state the handler works on.
+public class Command<S> {
+
+    public interface Handler<S> {
+        void handle(S session, Tokens tokens);
+    }
+
+    private final String name;
+    private final String usage;
+    private final int minArgs;
+    private final int maxArgs;
+    private final Role role;
+    private final boolean localOnly;
+    private final String usageError;
+    private final Handler<S> handler;
+
+    private Command(CommandBuilder<S> builder) {
+        this.name = builder.name;
+        this.usage = builder.usage;
+        this.minArgs = builder.minArgs;
+        this.maxArgs = builder.maxArgs;
+        this.role = builder.role;
+        this.localOnly = builder.localOnly;
+        this.usageError = builder.usageError;
+        this.handler = builder.handler;
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public String getUsage() {
+        return usage;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    // Whether only a console or batch session may run the command, not a client of the server
+    public boolean isLocalOnly() {
+        return localOnly;
+    }
+
+    // Message printed when the command is given the wrong number of arguments
+    public String getUsageError() {
+        return usageError;
+    }
+
+    // Whether the tokens (operation name included) carry an acceptable number of arguments
+    public boolean acceptsArgs(Tokens tokens) {
+        int args = tokens.size() - 1;
+        return args >= minArgs && args <= maxArgs;
+    }
+
+    public void run(S session, Tokens tokens) {
+        handler.handle(session, tokens);
+    }
+
+    public static class CommandBuilder<S> {
+        private final String name;
+        private final Handler<S> handler;
+        private String usage;
+        private int minArgs = 0;
+        private int maxArgs = 0;
+        private Role role = Role.ANYONE;
+        private boolean localOnly = false;
+        private String usageError = "Please try again!";
+
+        public CommandBuilder(String name, Handler<S> handler) {
+            this.name = name;
+            this.usage = name;
+            this.handler = handler;
+        }
+
+        // The argument placeholders shown in the command list, e.g. "<date> <vaccine>"
+        public CommandBuilder<S> usage(String args) {
+            this.usage = args.isEmpty() ? name : name + " " + args;
+            return this;
+        }
+
+        public CommandBuilder<S> args(int count) {
+            return args(count, count);
+        }
+
+        public CommandBuilder<S> args(int min, int max) {
+            this.minArgs = min;
+            this.maxArgs = max;
+            return this;
+        }
+
+        public CommandBuilder<S> role(Role role) {
+            this.role = role;
+            return this;
+        }
+
+        // For commands that read or write files on the host, which a network client has no business doing
+        public CommandBuilder<S> localOnly() {
+            this.localOnly = true;
+            return this;
+        }
+
+        public CommandBuilder<S> usageError(String usageError) {
+            this.usageError = usageError;
+            return this;
+        }
+
+        public Command<S> build() {
+            return new Command<>(this);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package scheduler.command;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The table of known commands. Lookups hash the operation token in place and probe an open-addressing
+// table, so finding the command for a line allocates nothing.
+public class CommandRegistry<S> {
+
+    private Command<S>[] slots = newSlots(16);
+    private final List<Command<S>> commands = new ArrayList<>();
+
+    public CommandRegistry<S> register(Command<S> command) {
+        if (find(command.getName()) != null) {
+            throw new IllegalArgumentException("Command already registered: " + command.getName());
+        }
+        commands.add(command);
+        if (commands.size() * 2 > slots.length) {
+            slots = newSlots(slots.length * 2);
+            for (Command<S> c : commands) {
+                insert(slots, c);
+            }
+        } else {
+            insert(slots, command);
+        }
+        return this;
+    }
+
+    // The command named by the first token, or null if there is none
+    public Command<S> lookup(Tokens tokens) {
+        if (tokens.size() == 0) {
+            return null;
+        }
+        int mask = slots.length - 1;
+        for (int i = spread(tokens.hashAt(0)) & mask; slots[i] != null; i = (i + 1) & mask) {
+            if (tokens.equalsAt(0, slots[i].getName())) {
+                return slots[i];
+            }
+        }
+        return null;
+    }
+
+    public Command<S> find(String name) {
+        return lookup(new Tokens(name));
+    }
+
+    // All commands in registration order
+    public List<Command<S>> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    private static <S> void insert(Command<S>[] table, Command<S> command) {
+        int mask = table.length - 1;
+        int i = spread(command.getName().hashCode()) & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = command;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private static <S> Command<S>[] newSlots(int size) {
+        @SuppressWarnings("unchecked")
+        Command<S>[] slots = (Command<S>[]) new Command<?>[size];
+        return slots;
+    }
+}
@@ -0,0 +1,13 @@
+package scheduler.command;
+
+// Who is allowed to run a command
+public enum Role {
+    // anyone, logged in or not
+    ANYONE,
+    // only when nobody is logged in
+    LOGGED_OUT,
+    // any logged-in user
+    LOGGED_IN,
+    PATIENT,
+    CAREGIVER
+}
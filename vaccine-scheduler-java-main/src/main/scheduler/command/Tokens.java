@@ -0,0 +1,97 @@
+package scheduler.command;
+
+import java.util.Arrays;
+
+// Splits a command line on whitespace without regular expressions or intermediate arrays. A Tokens instance
+// only records where each token starts and ends in the line; a token is copied into a String when get() asks
+// for it, so matching the command name allocates nothing. Instances are reused line after line and are not
+// thread-safe.
+public class Tokens {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private CharSequence line = "";
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] ends = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public Tokens() {
+    }
+
+    public Tokens(CharSequence line) {
+        reset(line);
+    }
+
+    // Tokenize a new line, replacing the previous one
+    public Tokens reset(CharSequence line) {
+        this.line = line;
+        this.size = 0;
+        int length = line.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            int start = i;
+            while (i < length && !Character.isWhitespace(line.charAt(i))) {
+                i++;
+            }
+            add(start, i);
+        }
+        return this;
+    }
+
+    // Number of tokens, including the operation name
+    public int size() {
+        return size;
+    }
+
+    public String get(int index) {
+        checkIndex(index);
+        return line.subSequence(starts[index], ends[index]).toString();
+    }
+
+    // Compare a token with a string without copying it
+    public boolean equalsAt(int index, String s) {
+        checkIndex(index);
+        int length = ends[index] - starts[index];
+        if (length != s.length()) {
+            return false;
+        }
+        int start = starts[index];
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(start + i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Same value as get(index).hashCode(), computed in place
+    public int hashAt(int index) {
+        checkIndex(index);
+        int h = 0;
+        for (int i = starts[index]; i < ends[index]; i++) {
+            h = 31 * h + line.charAt(i);
+        }
+        return h;
+    }
+
+    private void add(int start, int end) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            ends = Arrays.copyOf(ends, size * 2);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        size++;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Token " + index + " of " + size);
+        }
+    }
+}
@@ -1,18 +1,36 @@
 package scheduler.db;
 
+import scheduler.metrics.Metrics;
+import scheduler.metrics.Timer;
+import scheduler.util.Util;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 
 public class ConnectionManager {
 
-    private final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
-    private final String connectionUrl = "jdbc:sqlserver://" + System.getenv("Server") +
+    private static final String driverName = "com.microsoft.sqlserver.jdbc.SQLServerDriver";
+    private static final String connectionUrl = "jdbc:sqlserver://" + System.getenv("Server") +
             ".database.windows.net:1433;database=" + System.getenv("DBName");
-    private final String userName = System.getenv("UserID");
-    private final String userPass = System.getenv("Password");
+    private static final String userName = System.getenv("UserID");
+    private static final String userPass = System.getenv("Password");
+
+    // pool settings, overridable through the environment like the connection settings above
+    private static final int poolMinSize = Util.getEnvInt("PoolMinSize", 1);
+    private static final int poolMaxSize = Util.getEnvInt("PoolMaxSize", 10);
+    private static final long poolIdleTimeoutMillis = Util.getEnvInt("PoolIdleTimeoutSeconds", 300) * 1000L;
+    private static final long poolBorrowTimeoutMillis = Util.getEnvInt("PoolBorrowTimeoutMillis", 5000);
+    // prepared statements each pooled connection keeps open, 0 prepares every statement afresh
+    private static final int statementCacheSize = Util.getEnvInt("StatementCacheSize", 64);
+
+    private static final Timer connectTimer = Metrics.timer("connect");
+
+    // one pool shared by every ConnectionManager in the process, created on first use
+    private static ConnectionPool pool = null;
 
     private Connection con = null;
+    private ConnectionPool borrowedFrom = null;
 
     public ConnectionManager() {
         try {
@@ -22,20 +40,63 @@ public class ConnectionManager {
         }
     }
 
-    public Connection createConnection() {
+    // Borrow a connection from the shared pool; it must be handed back with closeConnection(). Throws if the
+    // database can't be reached, rather than hand out a null connection.
+    public Connection createConnection() throws SQLException {
+        long start = connectTimer.start();
         try {
-            con = DriverManager.getConnection(connectionUrl, userName, userPass);
+            borrowedFrom = getPool();
+            con = borrowedFrom.borrow();
+            connectTimer.stop(start);
         } catch (SQLException e) {
-            e.printStackTrace();
+            connectTimer.fail(start);
+            throw e;
         }
         return con;
     }
 
+    // A prepared statement for this SQL on the borrowed connection, reused from the connection's statement cache
+    // when it was prepared before. Don't close it; close the result sets it opens.
+    public PreparedStatement prepare(String sql) throws SQLException {
+        if (con == null) {
+            throw new SQLException("No connection");
+        }
+        return borrowedFrom.getStatementCache(con).prepare(sql);
+    }
+
+    // Return the borrowed connection to the shared pool
     public void closeConnection() {
-        try {
-            this.con.close();
-        } catch (SQLException e) {
-            e.printStackTrace();
+        if (con == null) {
+            return;
+        }
+        borrowedFrom.release(con);
+        con = null;
+        borrowedFrom = null;
+    }
+
+    public static PoolStats getPoolStats() {
+        return getPool().getStats();
+    }
+
+    // The statistics of the pool if one has been created, without creating one
+    private static synchronized PoolStats getCurrentPoolStats() {
+        return pool == null ? null : pool.getStats();
+    }
+
+    // Close all pooled connections, called once when the application exits
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static synchronized ConnectionPool getPool() {
+        if (pool == null) {
+            pool = new ConnectionPool(connectionUrl, userName, userPass, poolMinSize, poolMaxSize,
+                    poolIdleTimeoutMillis, poolBorrowTimeoutMillis, statementCacheSize);
+            Metrics.gauge("pool", ConnectionManager::getCurrentPoolStats);
         }
+        return pool;
     }
 }
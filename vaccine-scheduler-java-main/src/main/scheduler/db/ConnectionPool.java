@@ -0,0 +1,270 @@
+package scheduler.db;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// A bounded pool of JDBC connections. At most maxSize connections are handed out at once, idle connections
+// above minSize are closed after idleTimeoutMillis, and every idle connection is validated before it is reused.
+// Each connection keeps up to statementCacheSize prepared statements open for as long as it lives.
+public class ConnectionPool {
+
+    // seconds the driver gets to answer Connection.isValid() on borrow
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long borrowTimeoutMillis;
+    private final int statementCacheSize;
+
+    // permits for connections that may still be handed out
+    private final Semaphore permits;
+    // idle connections, most recently returned first
+    private final Deque<IdleConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService evictor;
+    // the statement cache of every open connection
+    private final Map<Connection, StatementCache> statementCaches = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    // statistics
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder statementEvictions = new LongAdder();
+
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long borrowTimeoutMillis, int statementCacheSize) {
+        if (minSize < 0 || maxSize <= 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.statementCacheSize = Math.max(statementCacheSize, 0);
+        this.permits = new Semaphore(maxSize, true);
+
+        // open the minimum number of connections up front so the first commands don't pay for the handshake
+        for (int i = 0; i < minSize; i++) {
+            try {
+                Connection con = open();
+                synchronized (idle) {
+                    idle.addLast(new IdleConnection(con));
+                }
+            } catch (SQLException e) {
+                System.out.println("Error occurred when opening pooled connection");
+                e.printStackTrace();
+                break;
+            }
+        }
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(idleTimeoutMillis / 2, 1000);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Borrow a connection, waiting at most borrowTimeoutMillis for one to be returned if the pool is exhausted
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection");
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            Connection con = takeValidIdle();
+            if (con == null) {
+                con = open();
+            }
+            active.incrementAndGet();
+            borrows.increment();
+            return con;
+        } catch (SQLException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    // Return a borrowed connection. Connections left in a broken state are closed instead of being reused.
+    public void release(Connection con) {
+        if (con == null) {
+            return;
+        }
+        active.decrementAndGet();
+        StatementCache statements = statementCaches.get(con);
+        if (statements != null) {
+            statements.release();
+        }
+        try {
+            boolean reusable = !closed && !con.isClosed();
+            if (reusable && !con.getAutoCommit()) {
+                // never hand out a connection with half a transaction on it
+                con.rollback();
+                con.setAutoCommit(true);
+            }
+            if (reusable) {
+                synchronized (idle) {
+                    idle.addFirst(new IdleConnection(con));
+                }
+            } else {
+                discard(con);
+            }
+        } catch (SQLException e) {
+            discard(con);
+        } finally {
+            permits.release();
+        }
+    }
+
+    // The prepared statements of a connection this pool opened
+    StatementCache getStatementCache(Connection con) {
+        return statementCaches.get(con);
+    }
+
+    public PoolStats getStats() {
+        int idleCount;
+        synchronized (idle) {
+            idleCount = idle.size();
+        }
+        long borrowCount = borrows.sum();
+        return new PoolStats(active.get(), idleCount, total.get(), maxSize, borrowCount, timeouts.sum(),
+                created.sum(), evicted.sum(),
+                borrowCount == 0 ? 0 : totalWaitNanos.sum() / borrowCount, maxWaitNanos.get(),
+                statementHits.sum(), statementMisses.sum(), statementEvictions.sum());
+    }
+
+    // Close every idle connection and refuse further borrows. Connections still in use are closed when released.
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        List<IdleConnection> closing;
+        synchronized (idle) {
+            closing = new ArrayList<>(idle);
+            idle.clear();
+        }
+        for (IdleConnection ic : closing) {
+            discard(ic.con);
+        }
+    }
+
+    private Connection takeValidIdle() {
+        while (true) {
+            IdleConnection ic;
+            synchronized (idle) {
+                ic = idle.pollFirst();
+            }
+            if (ic == null) {
+                return null;
+            }
+            try {
+                if (ic.con.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return ic.con;
+                }
+            } catch (SQLException e) {
+                // fall through and drop the connection
+            }
+            discard(ic.con);
+        }
+    }
+
+    // The expired connections are taken out under the lock but closed after it, since closing one is a round trip
+    // that borrows and releases shouldn't wait for
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<Connection> expired = new ArrayList<>();
+        synchronized (idle) {
+            // the oldest connections sit at the tail of the deque
+            Iterator<IdleConnection> it = idle.descendingIterator();
+            while (it.hasNext() && total.get() - expired.size() > minSize) {
+                IdleConnection ic = it.next();
+                if (now - ic.returnedAt < idleTimeoutMillis) {
+                    break;
+                }
+                it.remove();
+                expired.add(ic.con);
+            }
+        }
+        for (Connection con : expired) {
+            discard(con);
+            evicted.increment();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection con = DriverManager.getConnection(url, user, password);
+        statementCaches.put(con, new StatementCache(con, statementCacheSize, statementHits, statementMisses,
+                statementEvictions));
+        total.incrementAndGet();
+        created.increment();
+        return con;
+    }
+
+    private void discard(Connection con) {
+        total.decrementAndGet();
+        StatementCache statements = statementCaches.remove(con);
+        if (statements != null) {
+            statements.close();
+        }
+        try {
+            con.close();
+        } catch (SQLException e) {
+            // the connection is already unusable, nothing else to do
+        }
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos.add(nanos);
+        maxWaitNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static class IdleConnection {
+        private final Connection con;
+        private final long returnedAt;
+
+        private IdleConnection(Connection con) {
+            this.con = con;
+            this.returnedAt = System.currentTimeMillis();
+        }
+    }
+}
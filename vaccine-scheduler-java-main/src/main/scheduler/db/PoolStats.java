@@ -0,0 +1,109 @@
+package scheduler.db;
+
+// A point-in-time snapshot of the connection pool counters
+public class PoolStats {
+    private final int active;
+    private final int idle;
+    private final int total;
+    private final int maxSize;
+    private final long borrows;
+    private final long timeouts;
+    private final long created;
+    private final long evicted;
+    private final long avgWaitNanos;
+    private final long maxWaitNanos;
+    private final long statementHits;
+    private final long statementMisses;
+    private final long statementEvictions;
+
+    PoolStats(int active, int idle, int total, int maxSize, long borrows, long timeouts, long created,
+              long evicted, long avgWaitNanos, long maxWaitNanos, long statementHits, long statementMisses,
+              long statementEvictions) {
+        this.active = active;
+        this.idle = idle;
+        this.total = total;
+        this.maxSize = maxSize;
+        this.borrows = borrows;
+        this.timeouts = timeouts;
+        this.created = created;
+        this.evicted = evicted;
+        this.avgWaitNanos = avgWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.statementHits = statementHits;
+        this.statementMisses = statementMisses;
+        this.statementEvictions = statementEvictions;
+    }
+
+    // Getters
+    public int getActive() {
+        return active;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getEvicted() {
+        return evicted;
+    }
+
+    public long getAvgWaitNanos() {
+        return avgWaitNanos;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    // Prepares answered from a connection's statement cache
+    public long getStatementHits() {
+        return statementHits;
+    }
+
+    public long getStatementMisses() {
+        return statementMisses;
+    }
+
+    public long getStatementEvictions() {
+        return statementEvictions;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStats{" +
+                "active=" + active +
+                ", idle=" + idle +
+                ", total=" + total +
+                ", maxSize=" + maxSize +
+                ", borrows=" + borrows +
+                ", timeouts=" + timeouts +
+                ", created=" + created +
+                ", evicted=" + evicted +
+                ", avgWaitMicros=" + avgWaitNanos / 1000 +
+                ", maxWaitMicros=" + maxWaitNanos / 1000 +
+                ", statementHits=" + statementHits +
+                ", statementMisses=" + statementMisses +
+                ", statementEvictions=" + statementEvictions +
+                '}';
+    }
+}
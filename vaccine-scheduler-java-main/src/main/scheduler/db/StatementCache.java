@@ -0,0 +1,94 @@
+package scheduler.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// The prepared statements of one pooled connection, keyed by their SQL and kept open between borrows so that a
+// repeated query is executed by handle instead of being parsed and planned again. At most maxSize statements are
+// kept; the least recently used one is dropped to make room for a new one. A dropped statement (or any statement
+// when maxSize is 0) may still be in use by the borrower, so it is only closed when the connection is returned.
+//
+// Only the thread that has borrowed the connection uses its cache, so it needs no locking of its own.
+class StatementCache {
+
+    private final Connection con;
+    private final int maxSize;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    // statements to close when the connection is returned
+    private final List<PreparedStatement> dropped = new ArrayList<>();
+
+    // shared by every cache of the pool
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+
+    StatementCache(Connection con, int maxSize, LongAdder hits, LongAdder misses, LongAdder evictions) {
+        this.con = con;
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    StatementCache.this.evictions.increment();
+                    dropped.add(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // The statement for this SQL, with its parameters and any half-built batch cleared. The caller must not close
+    // it, only the result sets it opens.
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hits.increment();
+            statement.clearParameters();
+            statement.clearBatch();
+            return statement;
+        }
+        misses.increment();
+        statement = con.prepareStatement(sql);
+        if (maxSize > 0) {
+            statements.put(sql, statement);
+        } else {
+            dropped.add(statement);
+        }
+        return statement;
+    }
+
+    // Close the statements dropped during the borrow that just ended
+    void release() {
+        for (PreparedStatement statement : dropped) {
+            closeQuietly(statement);
+        }
+        dropped.clear();
+    }
+
+    // Close every statement, called when the connection is discarded
+    void close() {
+        release();
+        for (PreparedStatement statement : statements.values()) {
+            closeQuietly(statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // the statement is being dropped anyway
+        }
+    }
+}
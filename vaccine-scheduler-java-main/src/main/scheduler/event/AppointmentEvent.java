@@ -0,0 +1,27 @@
+package scheduler.event;
+
+import scheduler.model.Appointment;
+
+// An appointment was created or cancelled
+public class AppointmentEvent extends Event {
+    private final Appointment appointment;
+
+    public AppointmentEvent(EventType type, Appointment appointment) {
+        super(type);
+        this.appointment = appointment;
+    }
+
+    // Getters
+    public Appointment getAppointment() {
+        return appointment;
+    }
+
+    @Override
+    protected String describe() {
+        return "id=" + appointment.getAppointmentId() +
+                " time=" + appointment.getTime() +
+                " patient=" + appointment.getPatientName() +
+                " caregiver=" + appointment.getCaregiverName() +
+                " vaccine=" + appointment.getVaccineName();
+    }
+}
@@ -0,0 +1,27 @@
+package scheduler.event;
+
+// The available doses of a vaccine went up or down. A new vaccine is published as a change from zero.
+public class DosesChanged extends Event {
+    private final String vaccineName;
+    private final int delta;
+
+    public DosesChanged(String vaccineName, int delta) {
+        super(EventType.DOSES_CHANGED);
+        this.vaccineName = vaccineName;
+        this.delta = delta;
+    }
+
+    // Getters
+    public String getVaccineName() {
+        return vaccineName;
+    }
+
+    public int getDelta() {
+        return delta;
+    }
+
+    @Override
+    protected String describe() {
+        return "vaccine=" + vaccineName + " delta=" + delta;
+    }
+}
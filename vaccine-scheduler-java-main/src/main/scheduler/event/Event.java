@@ -0,0 +1,33 @@
+package scheduler.event;
+
+import java.time.Instant;
+
+// A change that has been committed to storage. Events are immutable; the subclasses carry the details of each type.
+public abstract class Event {
+    private final EventType type;
+    private final long timestamp;
+
+    protected Event(EventType type) {
+        this.type = type;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    // Getters
+    public EventType getType() {
+        return type;
+    }
+
+    // when the change was published, in epoch milliseconds
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    // The details as space-separated key=value pairs
+    protected abstract String describe();
+
+    // One line of the event log: time, type and details
+    @Override
+    public String toString() {
+        return Instant.ofEpochMilli(timestamp) + " " + type + " " + describe();
+    }
+}
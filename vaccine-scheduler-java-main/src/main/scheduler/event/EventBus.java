@@ -0,0 +1,261 @@
+package scheduler.event;
+
+import scheduler.metrics.Metrics;
+import scheduler.model.Appointment;
+import scheduler.util.Util;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.sql.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Publish/subscribe for the changes this process commits, so that caches and reports can follow them instead of
+// polling the database. The model layer publishes an event after each change is stored; events go into a bounded
+// ring buffer and one "event-dispatcher" thread hands them to every subscriber in publish order. Subscribers run on
+// that thread and should be quick; one that throws is reported and skipped.
+//
+// Nothing is queued, or even allocated, until someone subscribes. When the buffer (EventBufferSize events, 65536 by
+// default) is full, publishers wait for the dispatcher rather than lose events; only events published by a
+// subscriber itself are dropped then, since the dispatcher can't wait for itself. If EventLog is set, every event is
+// also appended to that file, one line each.
+public class EventBus {
+
+    // how long the dispatcher sleeps when idle, unless a publisher wakes it first
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // how long a publisher waits between tries when the buffer is full
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final RingBuffer<Event> buffer = new RingBuffer<>(Util.getEnvInt("EventBufferSize", 65536));
+    private static final List<Consumer<? super Event>> subscribers = new CopyOnWriteArrayList<>();
+
+    private static final LongAdder published = new LongAdder();
+    private static final LongAdder delivered = new LongAdder();
+    private static final LongAdder dropped = new LongAdder();
+    // publishes that found the buffer full and had to wait
+    private static final LongAdder waits = new LongAdder();
+
+    private static volatile boolean active = false;
+    private static volatile boolean stopping = false;
+    // set by the dispatcher before it parks, so publishers know to wake it
+    private static volatile boolean sleeping = false;
+    private static volatile Thread dispatcher = null;
+
+    static {
+        String file = System.getenv("EventLog");
+        if (file != null && !file.trim().isEmpty()) {
+            try {
+                subscribe(new EventFileSink(Paths.get(file.trim())));
+            } catch (IOException e) {
+                System.out.println("Could not open the event log " + file);
+                e.printStackTrace();
+            }
+        }
+        Metrics.gauge("events", EventBus::getStats);
+    }
+
+    // Deliver every event published from now on to the subscriber
+    public static synchronized void subscribe(Consumer<? super Event> subscriber) {
+        if (stopping) {
+            throw new IllegalStateException("The event bus has been shut down");
+        }
+        subscribers.add(subscriber);
+        if (dispatcher == null) {
+            Thread thread = new Thread(EventBus::dispatch, "event-dispatcher");
+            thread.setDaemon(true);
+            thread.start();
+            dispatcher = thread;
+        }
+        active = true;
+    }
+
+    // Deliver the events of one class, e.g. SlotEvent.class, to the subscriber
+    public static <T extends Event> void subscribe(Class<T> type, Consumer<? super T> subscriber) {
+        subscribe(event -> {
+            if (type.isInstance(event)) {
+                subscriber.accept(type.cast(event));
+            }
+        });
+    }
+
+    // Whether anyone is subscribed, i.e. whether publish does anything
+    public static boolean isActive() {
+        return active;
+    }
+
+    public static void publish(Event event) {
+        if (!active) {
+            return;
+        }
+        if (!buffer.offer(event)) {
+            Thread thread = dispatcher;
+            if (Thread.currentThread() == thread) {
+                dropped.increment();
+                return;
+            }
+            waits.increment();
+            do {
+                if (!thread.isAlive()) {
+                    dropped.increment();
+                    return;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            } while (!buffer.offer(event));
+        }
+        published.increment();
+        if (sleeping) {
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    // Shortcuts for the model layer; each does nothing, not even allocate the event, while nobody is subscribed
+
+    public static void userCreated(EventType type, String username) {
+        if (active) {
+            publish(new UserCreated(type, username));
+        }
+    }
+
+    public static void slotPublished(Date d, String caregiver) {
+        if (active) {
+            publish(new SlotEvent(EventType.SLOT_PUBLISHED, caregiver, d, d));
+        }
+    }
+
+    public static void slotBooked(Date d, String caregiver) {
+        if (active) {
+            publish(new SlotEvent(EventType.SLOT_BOOKED, caregiver, d, d));
+        }
+    }
+
+    public static void slotsWithdrawn(String caregiver, Date from, Date to) {
+        if (active) {
+            publish(new SlotEvent(EventType.SLOTS_WITHDRAWN, caregiver, from, to));
+        }
+    }
+
+    public static void dosesChanged(String vaccine, int delta) {
+        if (active && delta != 0) {
+            publish(new DosesChanged(vaccine, delta));
+        }
+    }
+
+    public static void appointmentCreated(Appointment appointment) {
+        if (active) {
+            publish(new AppointmentEvent(EventType.APPOINTMENT_CREATED, appointment));
+        }
+    }
+
+    // A new appointment: its slot is booked, one dose is used and the appointment exists
+    public static void appointmentBooked(Appointment appointment) {
+        if (active) {
+            slotBooked(appointment.getTime(), appointment.getCaregiverName());
+            dosesChanged(appointment.getVaccineName(), -1);
+            appointmentCreated(appointment);
+        }
+    }
+
+    public static void appointmentCancelled(Appointment appointment) {
+        if (active) {
+            publish(new AppointmentEvent(EventType.APPOINTMENT_CANCELLED, appointment));
+        }
+    }
+
+    // Deliver whatever is still queued, stop the dispatcher and close subscribers that hold a file
+    public static void shutdown() {
+        Thread thread;
+        synchronized (EventBus.class) {
+            stopping = true;
+            active = false;
+            thread = dispatcher;
+        }
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Consumer<? super Event> subscriber : subscribers) {
+            if (subscriber instanceof Closeable) {
+                try {
+                    ((Closeable) subscriber).close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Counts for the stats command, or null while nobody is subscribed
+    private static String getStats() {
+        if (subscribers.isEmpty()) {
+            return null;
+        }
+        return "EventStats{" +
+                "subscribers=" + subscribers.size() +
+                ", published=" + published.sum() +
+                ", delivered=" + delivered.sum() +
+                ", dropped=" + dropped.sum() +
+                ", waits=" + waits.sum() +
+                ", queued=" + buffer.size() + "/" + buffer.capacity() +
+                '}';
+    }
+
+    private static void dispatch() {
+        while (true) {
+            Event event = buffer.poll();
+            if (event != null) {
+                deliver(event);
+                continue;
+            }
+            if (!buffer.isEmpty()) {
+                // a publisher has claimed the next slot but not filled it in yet
+                Thread.onSpinWait();
+                continue;
+            }
+            // caught up: write out what the file subscribers have buffered
+            flushSubscribers();
+            if (stopping) {
+                return;
+            }
+            sleeping = true;
+            if (buffer.isEmpty() && !stopping) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            sleeping = false;
+        }
+    }
+
+    private static void deliver(Event event) {
+        for (Consumer<? super Event> subscriber : subscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException e) {
+                System.out.println("Event subscriber failed on " + event);
+                e.printStackTrace();
+            }
+        }
+        delivered.increment();
+    }
+
+    private static void flushSubscribers() {
+        for (Consumer<? super Event> subscriber : subscribers) {
+            if (subscriber instanceof Flushable) {
+                try {
+                    ((Flushable) subscriber).flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
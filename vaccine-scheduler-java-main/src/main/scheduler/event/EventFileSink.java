@@ -0,0 +1,67 @@
+package scheduler.event;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+// Appends every event to a local file, one line each (see Event.toString). The bus flushes it whenever it has
+// delivered everything queued, so lines reach the file in batches rather than one write per event.
+class EventFileSink implements Consumer<Event>, Flushable, Closeable {
+
+    private final Path path;
+    private final BufferedWriter writer;
+    // stop trying after the first failure instead of printing a stack trace per event
+    private boolean failed = false;
+
+    EventFileSink(Path path) throws IOException {
+        this.path = path;
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void accept(Event event) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.write(event.toString());
+            writer.newLine();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void fail(IOException e) {
+        failed = true;
+        System.out.println("Could not write the event log " + path + ", no more events will be written to it");
+        e.printStackTrace();
+    }
+}
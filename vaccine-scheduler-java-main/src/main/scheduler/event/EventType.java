@@ -0,0 +1,16 @@
+package scheduler.event;
+
+// What happened. Each kind of state has its own complete stream: a booking publishes SLOT_BOOKED, DOSES_CHANGED and
+// APPOINTMENT_CREATED, so a slot cache only needs the SLOT_ events and a dose report only DOSES_CHANGED.
+public enum EventType {
+    PATIENT_CREATED,
+    CAREGIVER_CREATED,
+    // a caregiver's slot became free, either newly uploaded or released by a cancellation
+    SLOT_PUBLISHED,
+    SLOT_BOOKED,
+    // every slot of a caregiver over a range of dates was removed
+    SLOTS_WITHDRAWN,
+    DOSES_CHANGED,
+    APPOINTMENT_CREATED,
+    APPOINTMENT_CANCELLED
+}
@@ -0,0 +1,64 @@
+package scheduler.event;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// A bounded queue for many producers and a single consumer over a fixed array. A producer claims the next sequence
+// with one CAS and then fills its slot; the consumer takes slots in sequence order and empties each one before
+// moving on, which is what tells producers the slot can be reused. Nothing is allocated per element.
+class RingBuffer<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    // next sequence to claim
+    private final AtomicLong head = new AtomicLong();
+    // next sequence to take; only the consumer writes it
+    private volatile long tail = 0;
+
+    // the capacity is rounded up to a power of two
+    RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    // Add the element, or return false at once if the buffer is full
+    boolean offer(T element) {
+        while (true) {
+            long sequence = head.get();
+            if (sequence - tail > mask) {
+                return false;
+            }
+            if (head.compareAndSet(sequence, sequence + 1)) {
+                slots.set((int) (sequence & mask), element);
+                return true;
+            }
+        }
+    }
+
+    // Take the next element, or null if there is none yet. The next element may be claimed but not filled in,
+    // in which case this returns null until its producer finishes. Consumer thread only.
+    T poll() {
+        int i = (int) (tail & mask);
+        T element = slots.get(i);
+        if (element == null) {
+            return null;
+        }
+        slots.set(i, null);
+        tail = tail + 1;
+        return element;
+    }
+
+    // whether nothing has been claimed past what the consumer has taken
+    boolean isEmpty() {
+        return head.get() == tail;
+    }
+
+    int size() {
+        return (int) (head.get() - tail);
+    }
+}
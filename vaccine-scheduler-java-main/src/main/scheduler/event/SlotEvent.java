@@ -0,0 +1,37 @@
+package scheduler.event;
+
+import java.sql.Date;
+
+// A caregiver's slots changed: one date for SLOT_PUBLISHED and SLOT_BOOKED, a range for SLOTS_WITHDRAWN
+public class SlotEvent extends Event {
+    private final String caregiverName;
+    private final Date from;
+    private final Date to;
+
+    public SlotEvent(EventType type, String caregiverName, Date from, Date to) {
+        super(type);
+        this.caregiverName = caregiverName;
+        this.from = from;
+        this.to = to;
+    }
+
+    // Getters
+    public String getCaregiverName() {
+        return caregiverName;
+    }
+
+    // the first date changed, which is the only one unless the type is SLOTS_WITHDRAWN
+    public Date getFrom() {
+        return from;
+    }
+
+    // the last date changed (inclusive)
+    public Date getTo() {
+        return to;
+    }
+
+    @Override
+    protected String describe() {
+        return "caregiver=" + caregiverName + " from=" + from + " to=" + to;
+    }
+}
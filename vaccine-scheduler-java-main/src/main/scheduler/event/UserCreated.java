@@ -0,0 +1,21 @@
+package scheduler.event;
+
+// A patient or caregiver account was created
+public class UserCreated extends Event {
+    private final String username;
+
+    public UserCreated(EventType type, String username) {
+        super(type);
+        this.username = username;
+    }
+
+    // Getters
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    protected String describe() {
+        return "username=" + username;
+    }
+}
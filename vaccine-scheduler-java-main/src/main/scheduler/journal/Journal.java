@@ -0,0 +1,438 @@
+package scheduler.journal;
+
+import scheduler.metrics.Metrics;
+import scheduler.metrics.Timer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+// A write-ahead log in local files: a change is appended here and acknowledged once it is on the local disk, and
+// applied to the database afterwards, in sequence order, by whoever reads the journal back.
+//
+// The journal is a directory of fixed-size segment files, each memory-mapped and named after the sequence number
+// of its first record. A record is [payload length][CRC32 of seq and payload][seq][payload]; a zero length marks
+// the end of the written part. Appends only copy into the mapping; one "journal-sync" thread forces what has been
+// copied to disk and wakes every appender it covers, so appenders that arrive while a force is running share the
+// next one (group commit). On open, a segment is read up to the first record that is torn or out of sequence,
+// which can only be the tail that was never acknowledged.
+//
+// The journal has a random id, kept in journal.id, so the database can remember which of its records it has
+// applied; together with the sequence number that is the idempotency key that makes replaying safe.
+public class Journal implements Closeable {
+
+    private static final int HEADER_BYTES = 16;
+    private static final String ID_FILE = "journal.id";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final Timer appendTimer = Metrics.timer("journal.append");
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final String id;
+
+    // oldest first, the last one is appended to; guarded by this
+    private final List<Segment> segments;
+    private long nextSeq;
+
+    // the last record copied into a segment and the last one known to be on disk; guarded by syncLock
+    private final Object syncLock = new Object();
+    private long writtenSeq;
+    private long durableSeq;
+    private long syncs = 0;
+    private IOException syncFailure = null;
+    private boolean closed = false;
+    private final Thread syncer;
+
+    // where the last read stopped, so reading on from there doesn't scan the segment again; guarded by readLock
+    private final Object readLock = new Object();
+    private Segment cursorSegment = null;
+    private int cursorOffset = 0;
+    private long cursorSeq = -1;
+
+    private Journal(Path dir, int segmentBytes, String id, List<Segment> segments, long nextSeq) {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.id = id;
+        this.segments = segments;
+        this.nextSeq = nextSeq;
+        this.writtenSeq = nextSeq - 1;
+        this.durableSeq = nextSeq - 1;
+        this.syncer = new Thread(this::syncLoop, "journal-sync");
+        this.syncer.setDaemon(true);
+        this.syncer.start();
+        Metrics.gauge("journal", this::getStats);
+    }
+
+    // Open the journal in the directory, creating it if there is none. New segment files are segmentBytes long,
+    // which has to fit a record header and one mapping.
+    public static Journal open(Path dir, long segmentBytes) throws IOException {
+        if (segmentBytes <= HEADER_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid journal segment size " + segmentBytes);
+        }
+        Files.createDirectories(dir);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SEGMENT_SUFFIX)) {
+            files.forEach(paths::add);
+        }
+        paths.sort(null);
+
+        Path idFile = dir.resolve(ID_FILE);
+        String id;
+        if (paths.isEmpty()) {
+            // a new journal, or one whose records are gone: start over under a new id, since the sequence
+            // numbers start over too
+            id = UUID.randomUUID().toString();
+            Files.write(idFile, id.getBytes(StandardCharsets.UTF_8));
+            syncDirectory(dir);
+        } else if (!Files.exists(idFile)) {
+            // without the id there is no telling which records the database already has
+            throw new IOException("The journal in " + dir + " has no " + ID_FILE);
+        } else {
+            id = new String(Files.readAllBytes(idFile), StandardCharsets.UTF_8).trim();
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        long nextSeq = 1;
+        for (Path path : paths) {
+            Segment segment = Segment.open(path, (int) segmentBytes);
+            segments.add(segment);
+            nextSeq = segment.recover();
+        }
+        if (segments.isEmpty()) {
+            segments.add(Segment.create(dir, nextSeq, (int) segmentBytes));
+        }
+        return new Journal(dir, (int) segmentBytes, id, segments, nextSeq);
+    }
+
+    // Getters
+    public String getId() {
+        return id;
+    }
+
+    // Append a record and return its sequence number once it is on disk
+    public long append(byte[] payload) throws IOException {
+        if (HEADER_BYTES + payload.length > segmentBytes) {
+            throw new IllegalArgumentException("Journal record too large: " + payload.length + " bytes");
+        }
+        long start = appendTimer.start();
+        long seq;
+        synchronized (this) {
+            Segment segment = segments.get(segments.size() - 1);
+            synchronized (syncLock) {
+                if (closed || syncFailure != null) {
+                    appendTimer.fail(start);
+                    throw new IOException("The journal is closed", syncFailure);
+                }
+            }
+            if (!segment.fits(payload.length)) {
+                // the full segment must be on disk before records in the next one are acknowledged
+                segment.force(segment.position);
+                segment = Segment.create(dir, nextSeq, segmentBytes);
+                segments.add(segment);
+            }
+            seq = nextSeq++;
+            segment.write(seq, payload);
+            synchronized (syncLock) {
+                writtenSeq = seq;
+                syncLock.notifyAll();
+            }
+        }
+
+        // the record is in the journal now and will be replayed, so the caller has to wait for the disk even if
+        // it is interrupted
+        boolean interrupted = false;
+        try {
+            synchronized (syncLock) {
+                while (durableSeq < seq) {
+                    if (syncFailure != null) {
+                        appendTimer.fail(start);
+                        throw new IOException("Could not write the journal", syncFailure);
+                    }
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        appendTimer.stop(start);
+        return seq;
+    }
+
+    // Up to max records that are on disk and come after the given sequence number, in sequence order
+    public List<JournalEntry> read(long afterSeq, int max) {
+        synchronized (readLock) {
+            List<Segment> snapshot;
+            synchronized (this) {
+                snapshot = new ArrayList<>(segments);
+            }
+            int first = 0;
+            while (first + 1 < snapshot.size() && snapshot.get(first + 1).firstSeq <= afterSeq + 1) {
+                first++;
+            }
+
+            List<JournalEntry> entries = new ArrayList<>();
+            for (int s = first; s < snapshot.size() && entries.size() < max; s++) {
+                Segment segment = snapshot.get(s);
+                int offset = segment == cursorSegment && afterSeq == cursorSeq ? cursorOffset : 0;
+                int end = segment.durableEnd;
+                long seq = afterSeq;
+                while (offset < end && entries.size() < max) {
+                    int length = segment.buffer.getInt(offset);
+                    seq = segment.buffer.getLong(offset + 8);
+                    if (seq > afterSeq) {
+                        byte[] payload = new byte[length];
+                        segment.buffer.get(offset + HEADER_BYTES, payload);
+                        entries.add(new JournalEntry(seq, payload));
+                    }
+                    offset += HEADER_BYTES + length;
+                }
+                cursorSegment = segment;
+                cursorOffset = offset;
+                cursorSeq = Math.max(seq, afterSeq);
+                afterSeq = cursorSeq;
+            }
+            return entries;
+        }
+    }
+
+    // Delete the segments whose records have all been applied, i.e. have a sequence number up to appliedSeq. The
+    // segment being appended to is always kept, so that sequence numbers carry on after a restart.
+    public void truncate(long appliedSeq) {
+        synchronized (readLock) {
+            synchronized (this) {
+                while (segments.size() > 1 && segments.get(1).firstSeq <= appliedSeq + 1) {
+                    Segment segment = segments.remove(0);
+                    if (segment == cursorSegment) {
+                        cursorSegment = null;
+                    }
+                    segment.delete();
+                }
+            }
+        }
+    }
+
+    // Wait for everything appended to reach the disk and close the segment files
+    @Override
+    public void close() {
+        synchronized (this) {
+            synchronized (syncLock) {
+                closed = true;
+                syncLock.notifyAll();
+            }
+        }
+        try {
+            syncer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            synchronized (syncLock) {
+                while (writtenSeq == durableSeq && !closed) {
+                    try {
+                        syncLock.wait();
+                    } catch (InterruptedException e) {
+                        // only close stops the syncer
+                    }
+                }
+                if (writtenSeq == durableSeq) {
+                    return;
+                }
+            }
+
+            // everything copied so far goes to disk in one force
+            Segment segment;
+            int end;
+            long target;
+            synchronized (this) {
+                segment = segments.get(segments.size() - 1);
+                end = segment.position;
+                target = nextSeq - 1;
+            }
+            try {
+                segment.force(end);
+            } catch (IOException e) {
+                synchronized (syncLock) {
+                    syncFailure = e;
+                    syncLock.notifyAll();
+                }
+                System.out.println("Could not write the journal, no more changes will be accepted");
+                e.printStackTrace();
+                return;
+            }
+            synchronized (syncLock) {
+                durableSeq = target;
+                syncs++;
+                syncLock.notifyAll();
+            }
+        }
+    }
+
+    // Counts for the stats command
+    private String getStats() {
+        int segmentCount;
+        synchronized (this) {
+            segmentCount = segments.size();
+        }
+        synchronized (syncLock) {
+            return "JournalStats{" +
+                    "id='" + id + '\'' +
+                    ", segments=" + segmentCount +
+                    ", written=" + writtenSeq +
+                    ", durable=" + durableSeq +
+                    ", syncs=" + syncs +
+                    '}';
+        }
+    }
+
+    // Make a file created or deleted in the directory survive a crash
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not every platform can open a directory; the file contents are forced either way
+        }
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final long firstSeq;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // end of the records written so far; guarded by the journal
+        private int position = 0;
+        // end of the records forced to disk, which is as far as readers go
+        private volatile int durableEnd = 0;
+
+        private Segment(Path path, long firstSeq, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.firstSeq = firstSeq;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment create(Path dir, long firstSeq, int segmentBytes) throws IOException {
+            Path path = dir.resolve(String.format("%020d", firstSeq) + SEGMENT_SUFFIX);
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            Segment segment = new Segment(path, firstSeq, channel,
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes));
+            syncDirectory(dir);
+            return segment;
+        }
+
+        static Segment open(Path path, int segmentBytes) throws IOException {
+            String name = path.getFileName().toString();
+            long firstSeq;
+            try {
+                firstSeq = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            } catch (NumberFormatException e) {
+                throw new IOException("Not a journal segment: " + path);
+            }
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), segmentBytes);
+            return new Segment(path, firstSeq, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        // Find the end of the intact records, clear whatever follows it and return the next sequence number
+        long recover() throws IOException {
+            long expected = firstSeq;
+            int offset = 0;
+            CRC32 crc = new CRC32();
+            while (offset + HEADER_BYTES <= buffer.capacity()) {
+                int length = buffer.getInt(offset);
+                if (length <= 0 || length > buffer.capacity() - offset - HEADER_BYTES
+                        || buffer.getLong(offset + 8) != expected) {
+                    break;
+                }
+                crc.reset();
+                crc.update(buffer.slice(offset + 8, 8 + length));
+                if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+                    break;
+                }
+                expected++;
+                offset += HEADER_BYTES + length;
+            }
+            position = offset;
+            if (offset + 4 <= buffer.capacity() && buffer.getInt(offset) != 0) {
+                // a torn record that was never acknowledged
+                byte[] zeros = new byte[buffer.capacity() - offset];
+                buffer.put(offset, zeros);
+                force(buffer.capacity());
+            }
+            durableEnd = offset;
+            return expected;
+        }
+
+        boolean fits(int payloadLength) {
+            return position + HEADER_BYTES + payloadLength <= buffer.capacity();
+        }
+
+        // Copy a record in; the length goes last so that a record is never seen half written
+        void write(long seq, byte[] payload) {
+            int offset = position;
+            buffer.putLong(offset + 8, seq);
+            buffer.put(offset + HEADER_BYTES, payload);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(offset + 8, 8 + payload.length));
+            buffer.putInt(offset + 4, (int) crc.getValue());
+            buffer.putInt(offset, payload.length);
+            position = offset + HEADER_BYTES + payload.length;
+        }
+
+        // Force the records up to end to disk
+        synchronized void force(int end) throws IOException {
+            if (end <= durableEnd) {
+                return;
+            }
+            try {
+                buffer.force(durableEnd, end - durableEnd);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            durableEnd = end;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        void delete() {
+            close();
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package scheduler.journal;
+
+// One record of the journal: its sequence number, which increases by one per record and is never reused, and the
+// bytes that were appended
+public class JournalEntry {
+    private final long seq;
+    private final byte[] payload;
+
+    JournalEntry(long seq, byte[] payload) {
+        this.seq = seq;
+        this.payload = payload;
+    }
+
+    // Getters
+    public long getSeq() {
+        return seq;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,124 @@
+package scheduler.metrics;
+
+import scheduler.util.Util;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Counts, error counts and latency histograms of the hot paths, by phase:
+//   command.<name>        a whole command, as run by Session
+//   connect               borrowing a database connection from the pool
+//   query.<table>.<call>  one repository call (on SQL Server this includes its connect)
+//   hash                  one password hash, including the wait for a hasher thread
+// plus gauges such as the pool and credential cache statistics. The stats command prints them all.
+//
+// Metrics are on unless the Metrics environment variable is "off"; when off, timers don't read the clock and the
+// storage isn't wrapped at all. If MetricsFile is set, the report is also appended to that file every
+// MetricsDumpSeconds seconds (60 by default) and once more when the application exits.
+public class Metrics {
+
+    private static final boolean enabled = !"off".equalsIgnoreCase(String.valueOf(System.getenv("Metrics")).trim());
+    private static final String dumpFile = System.getenv("MetricsFile");
+    private static final int dumpSeconds = Util.getEnvInt("MetricsDumpSeconds", 60);
+
+    private static final Map<String, Timer> timers = new ConcurrentSkipListMap<>();
+    private static final Map<String, Supplier<?>> gauges = new ConcurrentHashMap<>();
+    // failures recorded by the current thread, so a command can tell whether any of its calls failed
+    private static final ThreadLocal<long[]> threadErrors = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static ScheduledExecutorService dumper = null;
+
+    static {
+        if (enabled && dumpFile != null && dumpSeconds > 0) {
+            dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            });
+            dumper.scheduleAtFixedRate(Metrics::dump, dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    // The timer with this name, created on first use. Hot paths keep the timer in a field rather than look it up.
+    public static Timer timer(String name) {
+        Timer timer = timers.get(name);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(name, Timer::new);
+        }
+        return timer;
+    }
+
+    // Report the supplier's value under this name, replacing any earlier gauge of the same name. A null value is
+    // left out of the report.
+    public static void gauge(String name, Supplier<?> value) {
+        gauges.put(name, value);
+    }
+
+    // How many failures the current thread has recorded so far
+    public static long getErrorsOnThisThread() {
+        return threadErrors.get()[0];
+    }
+
+    static void errorOnThisThread() {
+        threadErrors.get()[0]++;
+    }
+
+    // Print every timer that has run, in name order, followed by the gauges. Latencies are in microseconds.
+    public static void report(PrintStream out) {
+        if (!enabled) {
+            out.println("Metrics are disabled");
+        } else {
+            out.println(String.format("%-40s %9s %7s %10s %10s %10s %10s %10s",
+                    "name", "count", "errors", "mean(us)", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+            for (Timer timer : timers.values()) {
+                Histogram h = timer.getLatencies();
+                if (h.getCount() == 0) {
+                    continue;
+                }
+                out.println(String.format("%-40s %9d %7d %10.1f %10.1f %10.1f %10.1f %10.1f",
+                        timer.getName(), h.getCount(), timer.getErrors(), h.getMean() / 1000,
+                        h.getPercentile(0.5) / 1000.0, h.getPercentile(0.99) / 1000.0,
+                        h.getPercentile(0.999) / 1000.0, h.getMax() / 1000.0));
+            }
+        }
+        for (Map.Entry<String, Supplier<?>> gauge : new ConcurrentSkipListMap<>(gauges).entrySet()) {
+            Object value = gauge.getValue().get();
+            if (value != null) {
+                out.println(gauge.getKey() + ": " + value);
+            }
+        }
+    }
+
+    // Stop the periodic dump and write a last one, called once when the application exits
+    public static synchronized void shutdown() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+            dump();
+        }
+    }
+
+    private static void dump() {
+        try (PrintStream out = new PrintStream(new FileOutputStream(dumpFile, true), false, "UTF-8")) {
+            out.println("# " + LocalDateTime.now());
+            report(out);
+            out.println();
+        } catch (IOException e) {
+            System.out.println("Error occurred when writing metrics to " + dumpFile);
+            e.printStackTrace();
+        }
+    }
+}
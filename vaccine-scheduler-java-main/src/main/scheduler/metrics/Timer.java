@@ -0,0 +1,55 @@
+package scheduler.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts and latencies of one kind of operation, e.g. a command or a repository call. Used as
+//
+//     long start = timer.start();
+//     ... on success timer.stop(start), on failure timer.fail(start)
+//
+// When metrics are disabled start() returns 0 and stop() and fail() return right away.
+public class Timer {
+
+    private final String name;
+    private final Histogram latencies = new Histogram();
+    private final LongAdder errors = new LongAdder();
+
+    Timer(String name) {
+        this.name = name;
+    }
+
+    public long start() {
+        return Metrics.isEnabled() ? System.nanoTime() : 0;
+    }
+
+    public void stop(long start) {
+        if (start != 0) {
+            latencies.record(System.nanoTime() - start);
+        }
+    }
+
+    public void fail(long start) {
+        if (start != 0) {
+            latencies.record(System.nanoTime() - start);
+            errors.increment();
+            Metrics.errorOnThisThread();
+        }
+    }
+
+    // Getters
+    public String getName() {
+        return name;
+    }
+
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,176 @@
+package scheduler.model;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.DoseInventory;
+import scheduler.event.EventBus;
+import scheduler.storage.AppointmentQuery;
+import scheduler.storage.Storages;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class Appointment {
+    private final int appointmentId;
+    private final Date time;
+    private final String patientName;
+    private final String caregiverName;
+    private final String vaccineName;
+
+    private Appointment(AppointmentBuilder builder) {
+        this.appointmentId = builder.appointmentId;
+        this.time = builder.time;
+        this.patientName = builder.patientName;
+        this.caregiverName = builder.caregiverName;
+        this.vaccineName = builder.vaccineName;
+    }
+
+    // Getters
+    public int getAppointmentId() {
+        return appointmentId;
+    }
+
+    public Date getTime() {
+        return time;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public String getCaregiverName() {
+        return caregiverName;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+
+    // Cancel an appointment of the given patient or caregiver (one of them may be null), freeing its slot and
+    // giving its dose back. Returns the cancelled appointment, or null if there is no such appointment of theirs.
+    public static Appointment cancel(int appointmentId, String patient, String caregiver) throws SQLException {
+        Appointment cancelled = Storages.get().appointments().cancel(appointmentId, patient, caregiver);
+        if (cancelled != null) {
+            DoseInventory.getInstance().restored(cancelled.vaccineName, 1);
+            AvailabilityIndex.slotReleased(cancelled.time, cancelled.caregiverName);
+            EventBus.appointmentCancelled(cancelled);
+            EventBus.slotPublished(cancelled.time, cancelled.caregiverName);
+            EventBus.dosesChanged(cancelled.vaccineName, 1);
+            Waitlist.slotsPublished(Collections.singletonList(cancelled.time));
+        }
+        return cancelled;
+    }
+
+    // Cancel every appointment of the caregiver from one date to another (inclusive) and withdraw the caregiver's
+    // slots on those dates, e.g. when they call in sick. Returns the cancelled appointments in id order.
+    public static List<Appointment> cancelAll(String caregiver, Date from, Date to) throws SQLException {
+        List<Appointment> cancelled = Storages.get().appointments().cancelAll(caregiver, from, to);
+        DoseInventory inventory = DoseInventory.getInstance();
+        Map<String, Integer> doses = new HashMap<>();
+        for (Appointment appointment : cancelled) {
+            inventory.restored(appointment.vaccineName, 1);
+            doses.merge(appointment.vaccineName, 1, Integer::sum);
+            EventBus.appointmentCancelled(appointment);
+        }
+        AvailabilityIndex.slotsWithdrawn(caregiver, from, to);
+        EventBus.slotsWithdrawn(caregiver, from, to);
+        doses.forEach(EventBus::dosesChanged);
+        // the slots are gone but the doses can serve waiters on other dates
+        Waitlist.dosesAdded(doses.keySet());
+        return cancelled;
+    }
+
+    // Stream one page of the caregiver's appointments to the consumer, returning how many there were
+    public static int forEachOfCaregiver(String caregiver, AppointmentQuery query, Consumer<Appointment> consumer)
+            throws SQLException {
+        return Storages.get().appointments().forEachOfCaregiver(caregiver, query, consumer);
+    }
+
+    // Stream one page of the patient's appointments to the consumer, returning how many there were
+    public static int forEachOfPatient(String patient, AppointmentQuery query, Consumer<Appointment> consumer)
+            throws SQLException {
+        return Storages.get().appointments().forEachOfPatient(patient, query, consumer);
+    }
+
+    @Override
+    public String toString() {
+        return "Appointment{" +
+                "appointmentId=" + appointmentId +
+                ", time=" + time +
+                ", patientName='" + patientName + '\'' +
+                ", caregiverName='" + caregiverName + '\'' +
+                ", vaccineName='" + vaccineName + '\'' +
+                '}';
+    }
+
+    public static class AppointmentBuilder {
+        private final int appointmentId;
+        private final Date time;
+        private final String patientName;
+        private final String caregiverName;
+        private final String vaccineName;
+
+        public AppointmentBuilder(int appointmentId, Date time, String patientName, String caregiverName,
+                                  String vaccineName) {
+            this.appointmentId = appointmentId;
+            this.time = time;
+            this.patientName = patientName;
+            this.caregiverName = caregiverName;
+            this.vaccineName = vaccineName;
+        }
+
+        public Appointment build() {
+            return new Appointment(this);
+        }
+    }
+
+    public static class AppointmentReserver {
+        private final Date from;
+        private final Date to;
+        private final String patientName;
+        private final String vaccineName;
+
+        public AppointmentReserver(Date time, String patientName, String vaccineName) {
+            this(time, time, patientName, vaccineName);
+        }
+
+        // Book the earliest date from one date to another (inclusive, to may be null for no end) that has a free
+        // caregiver
+        public AppointmentReserver(Date from, Date to, String patientName, String vaccineName) {
+            this.from = from;
+            this.to = to;
+            this.patientName = patientName;
+            this.vaccineName = vaccineName;
+        }
+
+        // Book the appointment. Throws IllegalStateException with a user-facing message if there is no free
+        // caregiver, no such vaccine or no dose left; nothing is changed in that case.
+        public Appointment reserve() throws SQLException {
+            // take the dose in memory first, so a reservation never waits on the Vaccines row
+            DoseInventory inventory = DoseInventory.getInstance();
+            inventory.takeDoses(this.vaccineName, 1);
+            boolean reserved = false;
+            try {
+                Appointment appointment = this.from.equals(this.to)
+                        ? Storages.get().appointments().reserve(this.from, this.patientName, this.vaccineName)
+                        : Storages.get().appointments().reserveEarliest(this.from, this.to, this.patientName,
+                                this.vaccineName);
+                if (appointment == null) {
+                    throw new IllegalStateException("No Caregiver is available!");
+                }
+                reserved = true;
+                AvailabilityIndex.slotBooked(appointment.getTime(), appointment.getCaregiverName());
+                EventBus.appointmentBooked(appointment);
+                return appointment;
+            } finally {
+                if (!reserved) {
+                    inventory.returnDoses(this.vaccineName, 1);
+                }
+            }
+        }
+    }
+}
@@ -1,26 +1,49 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
-import scheduler.util.Util;
-
-import java.sql.*;
-import java.util.Arrays;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.CredentialCache;
+import scheduler.event.EventBus;
+import scheduler.event.EventType;
+import scheduler.metrics.Metrics;
+import scheduler.storage.Storages;
+import scheduler.util.PasswordHasher;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 
 public class Caregiver {
     private final String username;
     private final byte[] salt;
     private final byte[] hash;
+    private final HashSpec hashSpec;
+
+    // credentials of recently seen usernames, including usernames that turned out not to exist
+    private static final CredentialCache credentials =
+            CredentialCache.fromEnv("caregivers", Caregiver::loadCredentials);
+
+    static {
+        Metrics.gauge("credentials.caregivers", credentials::toString);
+    }
 
     private Caregiver(CaregiverBuilder builder) {
         this.username = builder.username;
         this.salt = builder.salt;
         this.hash = builder.hash;
+        this.hashSpec = builder.hashSpec;
     }
 
     private Caregiver(CaregiverGetter getter) {
         this.username = getter.username;
         this.salt = getter.salt;
         this.hash = getter.hash;
+        this.hashSpec = getter.hashSpec;
     }
 
     // Getters
@@ -36,51 +59,96 @@ public class Caregiver {
         return hash;
     }
 
+    public HashSpec getHashSpec() {
+        return hashSpec;
+    }
+
+    // Whether a caregiver with this username exists, answered from the credential cache when possible
+    public static boolean exists(String username) throws SQLException {
+        return credentials.exists(username);
+    }
+
+    public static CredentialCache getCredentialCache() {
+        return credentials;
+    }
+
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addCaregiver = "INSERT INTO Caregivers VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addCaregiver);
-            statement.setString(1, this.username);
-            statement.setBytes(2, this.salt);
-            statement.setBytes(3, this.hash);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Credentials stored = new Credentials(this.salt, this.hash, this.hashSpec);
+        Storages.get().caregivers().insert(this.username, stored);
+        credentials.put(this.username, stored);
+        EventBus.userCreated(EventType.CAREGIVER_CREATED, this.username);
     }
 
     public void uploadAvailability(Date d) throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addAvailability);
-            statement.setDate(1, d);
-            statement.setString(2, this.username);
-            statement.setInt(3, 1);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+        Storages.get().availabilities().insert(d, this.username);
+        AvailabilityIndex.slotPublished(d, this.username);
+        EventBus.slotPublished(d, this.username);
+        Waitlist.slotsPublished(Collections.singletonList(d));
+    }
+
+    // Publish many dates at once (a single multi-row insert on SQL Server). Returns whether each date was added;
+    // dates that are already published (or repeated in the list) are skipped instead of failing the whole insert.
+    public boolean[] uploadAvailability(List<Date> dates) throws SQLException {
+        boolean[] inserted = Storages.get().availabilities().insertAll(this.username, dates);
+        List<Date> published = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i]) {
+                EventBus.slotPublished(dates.get(i), this.username);
+                published.add(dates.get(i));
+            }
         }
+        AvailabilityIndex.slotsPublished(this.username, published);
+        Waitlist.slotsPublished(published);
+        return inserted;
+    }
+
+    // Publish every date from start to end (inclusive) that falls on one of the given days of the week, in one
+    // round trip. Returns whether each generated date was added, in date order.
+    public boolean[] uploadAvailability(Date start, Date end, Set<DayOfWeek> days) throws SQLException {
+        List<Date> dates = new ArrayList<>();
+        LocalDate last = end.toLocalDate();
+        for (LocalDate d = start.toLocalDate(); !d.isAfter(last); d = d.plusDays(1)) {
+            if (days.contains(d.getDayOfWeek())) {
+                dates.add(Date.valueOf(d));
+            }
+        }
+        return uploadAvailability(dates);
+    }
+
+    // Insert many caregivers at once (one batch and one transaction on SQL Server). Returns whether each caregiver was
+    // inserted; a caregiver whose username is already taken is skipped instead of failing the batch.
+    public static boolean[] saveAllToDB(List<Caregiver> caregivers) throws SQLException {
+        List<String> usernames = new ArrayList<>(caregivers.size());
+        List<Credentials> stored = new ArrayList<>(caregivers.size());
+        for (Caregiver caregiver : caregivers) {
+            usernames.add(caregiver.username);
+            stored.add(new Credentials(caregiver.salt, caregiver.hash, caregiver.hashSpec));
+        }
+        boolean[] inserted = Storages.get().caregivers().insertAll(usernames, stored);
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i]) {
+                credentials.put(usernames.get(i), stored.get(i));
+                EventBus.userCreated(EventType.CAREGIVER_CREATED, usernames.get(i));
+            } else {
+                // the name is taken by someone else, whose credentials we don't know
+                credentials.invalidate(usernames.get(i));
+            }
+        }
+        return inserted;
     }
 
     public static class CaregiverBuilder {
         private final String username;
         private final byte[] salt;
         private final byte[] hash;
+        private final HashSpec hashSpec;
 
+        // the hash must have been made with the current spec, as Util.generateHash does
         public CaregiverBuilder(String username, byte[] salt, byte[] hash) {
             this.username = username;
             this.salt = salt;
             this.hash = hash;
+            this.hashSpec = PasswordHasher.getInstance().getCurrentSpec();
         }
 
         public Caregiver build() {
@@ -93,6 +161,7 @@ public class Caregiver {
         private final String password;
         private byte[] salt;
         private byte[] hash;
+        private HashSpec hashSpec;
 
         public CaregiverGetter(String username, String password) {
             this.username = username;
@@ -100,35 +169,40 @@ public class Caregiver {
         }
 
         public Caregiver get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getCaregiver = "SELECT Salt, Hash FROM Caregivers WHERE Username = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getCaregiver);
-                statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
-                        return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Caregiver(this);
-                    }
-                }
+            Credentials stored = credentials.get(this.username);
+            if (stored == null) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            // check if the password matches; verify() ignores the zero padding of the BINARY column
+            PasswordHasher hasher = PasswordHasher.getInstance();
+            if (!hasher.verify(password, stored.getSalt(), stored.getHash(), stored.getHashSpec())) {
+                return null;
+            }
+            this.salt = stored.getSalt();
+            this.hash = stored.getHash();
+            this.hashSpec = stored.getHashSpec();
+            if (hasher.needsRehash(this.hashSpec)) {
+                // the password is known right now, so this is the moment to upgrade an old hash
+                rehash(hasher);
+            }
+            return new Caregiver(this);
         }
+
+        private void rehash(PasswordHasher hasher) throws SQLException {
+            byte[] newSalt = hasher.generateSalt();
+            byte[] newHash = hasher.hash(password, newSalt);
+            HashSpec newSpec = hasher.getCurrentSpec();
+
+            Credentials stored = new Credentials(newSalt, newHash, newSpec);
+            Storages.get().caregivers().updateCredentials(this.username, stored);
+            this.salt = newSalt;
+            this.hash = newHash;
+            this.hashSpec = newSpec;
+            credentials.put(this.username, stored);
+        }
+    }
+
+    private static Credentials loadCredentials(String username) throws SQLException {
+        return Storages.get().caregivers().find(username);
     }
 }
@@ -0,0 +1,29 @@
+package scheduler.model;
+
+import scheduler.util.PasswordHasher.HashSpec;
+
+// What a login needs to check a password: the stored salt and hash and the spec the hash was made with
+public class Credentials {
+    private final byte[] salt;
+    private final byte[] hash;
+    private final HashSpec hashSpec;
+
+    public Credentials(byte[] salt, byte[] hash, HashSpec hashSpec) {
+        this.salt = salt;
+        this.hash = hash;
+        this.hashSpec = hashSpec;
+    }
+
+    // Getters
+    public byte[] getSalt() {
+        return salt;
+    }
+
+    public byte[] getHash() {
+        return hash;
+    }
+
+    public HashSpec getHashSpec() {
+        return hashSpec;
+    }
+}
@@ -1,26 +1,42 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
-import scheduler.util.Util;
-
-import java.sql.*;
-import java.util.Arrays;
+import scheduler.cache.CredentialCache;
+import scheduler.event.EventBus;
+import scheduler.event.EventType;
+import scheduler.metrics.Metrics;
+import scheduler.storage.Storages;
+import scheduler.util.PasswordHasher;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 public class Patient {
     private final String username;
     private final byte[] salt;
     private final byte[] hash;
+    private final HashSpec hashSpec;
+
+    // credentials of recently seen usernames, including usernames that turned out not to exist
+    private static final CredentialCache credentials = CredentialCache.fromEnv("patients", Patient::loadCredentials);
+
+    static {
+        Metrics.gauge("credentials.patients", credentials::toString);
+    }
 
     private Patient(PatientBuilder builder) {
         this.username = builder.username;
         this.salt = builder.salt;
         this.hash = builder.hash;
+        this.hashSpec = builder.hashSpec;
     }
 
     private Patient(PatientGetter getter) {
         this.username = getter.username;
         this.salt = getter.salt;
         this.hash = getter.hash;
+        this.hashSpec = getter.hashSpec;
     }
 
     // Getters
@@ -36,33 +52,60 @@ public class Patient {
         return hash;
     }
 
+    public HashSpec getHashSpec() {
+        return hashSpec;
+    }
+
+    // Whether a patient with this username exists, answered from the credential cache when possible
+    public static boolean exists(String username) throws SQLException {
+        return credentials.exists(username);
+    }
+
+    public static CredentialCache getCredentialCache() {
+        return credentials;
+    }
+
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addPatient = "INSERT INTO Patients VALUES (? , ?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addPatient);
-            statement.setString(1, this.username);
-            statement.setBytes(2, this.salt);
-            statement.setBytes(3, this.hash);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+        Credentials stored = new Credentials(this.salt, this.hash, this.hashSpec);
+        Storages.get().patients().insert(this.username, stored);
+        credentials.put(this.username, stored);
+        EventBus.userCreated(EventType.PATIENT_CREATED, this.username);
+    }
+
+    // Insert many patients at once (one batch and one transaction on SQL Server). Returns whether each patient was
+    // inserted; a patient whose username is already taken is skipped instead of failing the batch.
+    public static boolean[] saveAllToDB(List<Patient> patients) throws SQLException {
+        List<String> usernames = new ArrayList<>(patients.size());
+        List<Credentials> stored = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            usernames.add(patient.username);
+            stored.add(new Credentials(patient.salt, patient.hash, patient.hashSpec));
+        }
+        boolean[] inserted = Storages.get().patients().insertAll(usernames, stored);
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i]) {
+                credentials.put(usernames.get(i), stored.get(i));
+                EventBus.userCreated(EventType.PATIENT_CREATED, usernames.get(i));
+            } else {
+                // the name is taken by someone else, whose credentials we don't know
+                credentials.invalidate(usernames.get(i));
+            }
         }
+        return inserted;
     }
 
     public static class PatientBuilder {
         private final String username;
         private final byte[] salt;
         private final byte[] hash;
+        private final HashSpec hashSpec;
 
+        // the hash must have been made with the current spec, as Util.generateHash does
         public PatientBuilder(String username, byte[] salt, byte[] hash) {
             this.username = username;
             this.salt = salt;
             this.hash = hash;
+            this.hashSpec = PasswordHasher.getInstance().getCurrentSpec();
         }
 
         public Patient build() {
@@ -75,6 +118,7 @@ public class Patient {
         private final String password;
         private byte[] salt;
         private byte[] hash;
+        private HashSpec hashSpec;
 
         public PatientGetter(String username, String password) {
             this.username = username;
@@ -82,35 +126,40 @@ public class Patient {
         }
 
         public Patient get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getPatient = "SELECT Salt, Hash FROM Patients WHERE Username = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getPatient);
-                statement.setString(1, this.username);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    byte[] salt = resultSet.getBytes("Salt");
-                    // we need to call Util.trim() to get rid of the paddings,
-                    // try to remove the use of Util.trim() and you'll see :)
-                    byte[] hash = Util.trim(resultSet.getBytes("Hash"));
-                    // check if the password matches
-                    byte[] calculatedHash = Util.generateHash(password, salt);
-                    if (!Arrays.equals(hash, calculatedHash)) {
-                        return null;
-                    } else {
-                        this.salt = salt;
-                        this.hash = hash;
-                        return new Patient(this);
-                    }
-                }
+            Credentials stored = credentials.get(this.username);
+            if (stored == null) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            // check if the password matches; verify() ignores the zero padding of the BINARY column
+            PasswordHasher hasher = PasswordHasher.getInstance();
+            if (!hasher.verify(password, stored.getSalt(), stored.getHash(), stored.getHashSpec())) {
+                return null;
+            }
+            this.salt = stored.getSalt();
+            this.hash = stored.getHash();
+            this.hashSpec = stored.getHashSpec();
+            if (hasher.needsRehash(this.hashSpec)) {
+                // the password is known right now, so this is the moment to upgrade an old hash
+                rehash(hasher);
+            }
+            return new Patient(this);
+        }
+
+        private void rehash(PasswordHasher hasher) throws SQLException {
+            byte[] newSalt = hasher.generateSalt();
+            byte[] newHash = hasher.hash(password, newSalt);
+            HashSpec newSpec = hasher.getCurrentSpec();
+
+            Credentials stored = new Credentials(newSalt, newHash, newSpec);
+            Storages.get().patients().updateCredentials(this.username, stored);
+            this.salt = newSalt;
+            this.hash = newHash;
+            this.hashSpec = newSpec;
+            credentials.put(this.username, stored);
         }
     }
+
+    private static Credentials loadCredentials(String username) throws SQLException {
+        return Storages.get().patients().find(username);
+    }
 }
@@ -1,11 +1,16 @@
 package scheduler.model;
 
-import scheduler.db.ConnectionManager;
+import scheduler.cache.DoseInventory;
+import scheduler.event.EventBus;
+import scheduler.storage.Storages;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class Vaccine {
     private final String vaccineName;
@@ -31,65 +36,69 @@ public class Vaccine {
     }
 
     public void saveToDB() throws SQLException {
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
-
-        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
-        try {
-            PreparedStatement statement = con.prepareStatement(addDoses);
-            statement.setString(1, this.vaccineName);
-            statement.setInt(2, this.availableDoses);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
-        }
+        Storages.get().vaccines().insert(this.vaccineName, this.availableDoses);
+        DoseInventory.getInstance().created(this.vaccineName, this.availableDoses);
+        EventBus.dosesChanged(this.vaccineName, this.availableDoses);
+        Waitlist.dosesAdded(Collections.singletonList(this.vaccineName));
     }
 
-    // Increment the available doses
+    // Increment the available doses. The change is made in the dose inventory and written to the database
+    // shortly after.
     public void increaseAvailableDoses(int num) throws SQLException {
         if (num <= 0) {
             throw new IllegalArgumentException("Argument cannot be negative!");
         }
-        this.availableDoses += num;
-
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
+        Integer doses = DoseInventory.getInstance().addDoses(this.vaccineName, num);
+        if (doses == null) {
+            throw new SQLException("No such vaccine: " + this.vaccineName);
+        }
+        this.availableDoses = doses;
+        EventBus.dosesChanged(this.vaccineName, num);
+        Waitlist.dosesAdded(Collections.singletonList(this.vaccineName));
+    }
 
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
+    // Decrement the available doses. The change is made in the dose inventory and written to the database
+    // shortly after.
+    public void decreaseAvailableDoses(int num) throws SQLException {
         try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+            this.availableDoses = DoseInventory.getInstance().takeDoses(this.vaccineName, num);
+            EventBus.dosesChanged(this.vaccineName, -num);
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException(e.getMessage());
         }
     }
 
-    // Decrement the available doses
-    public void decreaseAvailableDoses(int num) throws SQLException {
-        if (this.availableDoses - num < 0) {
-            throw new IllegalArgumentException("Not enough available doses!");
+    // Add doses to many vaccines, creating the vaccines that don't exist yet all at once.
+    // Each element carries a vaccine name and the number of doses to add to it. Doses added to existing vaccines
+    // only change the dose inventory, which writes them to the database shortly after.
+    public static void addAllDoses(List<Vaccine> deltas) throws SQLException {
+        DoseInventory inventory = DoseInventory.getInstance();
+        Set<String> names = new LinkedHashSet<>();
+        Map<String, Integer> created = new LinkedHashMap<>();
+        for (Vaccine delta : deltas) {
+            names.add(delta.vaccineName);
+            if (created.containsKey(delta.vaccineName)
+                    || inventory.addDoses(delta.vaccineName, delta.availableDoses) == null) {
+                created.merge(delta.vaccineName, delta.availableDoses, Integer::sum);
+            }
         }
-        this.availableDoses -= num;
-        ConnectionManager cm = new ConnectionManager();
-        Connection con = cm.createConnection();
 
-        String removeAvailability  = "UPDATE vaccines SET Doses = ? WHERE name = ?;";
-        try {
-            PreparedStatement statement = con.prepareStatement(removeAvailability);
-            statement.setInt(1, this.availableDoses);
-            statement.setString(2, this.vaccineName);
-            statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new SQLException();
-        } finally {
-            cm.closeConnection();
+        if (!created.isEmpty()) {
+            boolean[] inserted = Storages.get().vaccines().insertAll(created);
+            int i = 0;
+            for (Map.Entry<String, Integer> vaccine : created.entrySet()) {
+                if (inserted[i++]) {
+                    inventory.created(vaccine.getKey(), vaccine.getValue());
+                } else {
+                    // another process created it first
+                    inventory.addDoses(vaccine.getKey(), vaccine.getValue());
+                }
+            }
         }
+        for (Vaccine delta : deltas) {
+            EventBus.dosesChanged(delta.vaccineName, delta.availableDoses);
+        }
+        Waitlist.dosesAdded(names);
     }
 
     @Override
@@ -109,7 +118,7 @@ public class Vaccine {
             this.availableDoses = availableDoses;
         }
 
-        public Vaccine build() throws SQLException {
+        public Vaccine build() {
             return new Vaccine(this);
         }
     }
@@ -123,25 +132,13 @@ public class Vaccine {
         }
 
         public Vaccine get() throws SQLException {
-            ConnectionManager cm = new ConnectionManager();
-            Connection con = cm.createConnection();
-
-            String getVaccine = "SELECT Name, Doses FROM Vaccines WHERE Name = ?";
-            try {
-                PreparedStatement statement = con.prepareStatement(getVaccine);
-                statement.setString(1, this.vaccineName);
-                ResultSet resultSet = statement.executeQuery();
-                while (resultSet.next()) {
-                    this.availableDoses = resultSet.getInt("Doses");
-                    return new Vaccine(this);
-                }
+            // the dose inventory holds the current count, including changes not yet written to the database
+            Integer doses = DoseInventory.getInstance().getDoses(this.vaccineName);
+            if (doses == null) {
                 return null;
-            } catch (SQLException e) {
-                throw new SQLException();
-            } finally {
-                cm.closeConnection();
             }
+            this.availableDoses = doses;
+            return new Vaccine(this);
         }
     }
 }
-
@@ -0,0 +1,64 @@
+package scheduler.model;
+
+import java.sql.Date;
+
+// A patient on the waitlist for a slot on a date with a dose of a vaccine. Waiters are served oldest (lowest
+// id) first.
+public class Waiter {
+    private final int waiterId;
+    private final Date time;
+    private final String patientName;
+    private final String vaccineName;
+
+    private Waiter(WaiterBuilder builder) {
+        this.waiterId = builder.waiterId;
+        this.time = builder.time;
+        this.patientName = builder.patientName;
+        this.vaccineName = builder.vaccineName;
+    }
+
+    // Getters
+    public int getWaiterId() {
+        return waiterId;
+    }
+
+    public Date getTime() {
+        return time;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public String getVaccineName() {
+        return vaccineName;
+    }
+
+    @Override
+    public String toString() {
+        return "Waiter{" +
+                "waiterId=" + waiterId +
+                ", time=" + time +
+                ", patientName='" + patientName + '\'' +
+                ", vaccineName='" + vaccineName + '\'' +
+                '}';
+    }
+
+    public static class WaiterBuilder {
+        private final int waiterId;
+        private final Date time;
+        private final String patientName;
+        private final String vaccineName;
+
+        public WaiterBuilder(int waiterId, Date time, String patientName, String vaccineName) {
+            this.waiterId = waiterId;
+            this.time = time;
+            this.patientName = patientName;
+            this.vaccineName = vaccineName;
+        }
+
+        public Waiter build() {
+            return new Waiter(this);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package scheduler.model;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.DoseInventory;
+import scheduler.event.EventBus;
+import scheduler.storage.Storages;
+import scheduler.storage.WaitlistRepository;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// Patients waiting for a date on which no caregiver was free. Whenever capacity appears (availability uploaded,
+// doses added, an appointment cancelled) a background allocator books the oldest waiters into it, many per
+// transaction, so patients don't have to keep retrying reserve.
+//
+// The dates and vaccines someone waits for are also kept in memory, loaded from the Waitlist table on first use,
+// so that capacity nobody is waiting for (the usual case) is passed over without a query.
+public class Waitlist {
+
+    // most waiters booked in one allocation transaction
+    private static final int ALLOCATION_BATCH = 100;
+    // waiters read per query when loading the waited dates
+    private static final int LOAD_PAGE = 1000;
+
+    // date -> vaccines someone waits for on it; null until loaded. Dates are added after the waiter is in the
+    // table and removed once the table has none left for them, both under the class lock.
+    private static volatile Map<Date, Set<String>> waited = null;
+
+    // one thread, so allocations never compete with each other for the same slots
+    private static final ExecutorService allocator = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "waitlist-allocator");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Put the patient on the waitlist for the date and vaccine. Returns their position in that queue, or 0 if
+    // they were already on it. Past dates are refused, as nothing could ever be allocated to their waiters.
+    public static int join(Date time, String vaccine, String patient) throws SQLException {
+        if (time.toLocalDate().isBefore(LocalDate.now())) {
+            throw new IllegalStateException("Please enter a date that is not in the past!");
+        }
+        Map<Date, Set<String>> dates = waited();
+        int position = Storages.get().waitlist().add(time, vaccine, patient);
+        if (position > 0) {
+            synchronized (Waitlist.class) {
+                dates.computeIfAbsent(time, k -> ConcurrentHashMap.newKeySet()).add(vaccine);
+            }
+            // there may be capacity already, e.g. doses added while every caregiver was booked
+            slotsPublished(Collections.singletonList(time));
+        }
+        return position;
+    }
+
+    // The hooks below are called after capacity was committed; allocation happens in the background.
+
+    public static void slotsPublished(Collection<Date> dates) {
+        Map<Date, Set<String>> waitedDates = waitedOrNull();
+        if (waitedDates == null) {
+            return;
+        }
+        List<Date> matched = new ArrayList<>();
+        for (Date d : dates) {
+            if (waitedDates.containsKey(d)) {
+                matched.add(d);
+            }
+        }
+        allocateLater(matched);
+    }
+
+    public static void dosesAdded(Collection<String> vaccines) {
+        Map<Date, Set<String>> waitedDates = waitedOrNull();
+        if (waitedDates == null) {
+            return;
+        }
+        List<Date> matched = new ArrayList<>();
+        waitedDates.forEach((d, waitedVaccines) -> {
+            if (!Collections.disjoint(waitedVaccines, vaccines)) {
+                matched.add(d);
+            }
+        });
+        allocateLater(matched);
+    }
+
+    // Forget the waited dates so they are loaded again, e.g. after import_snapshot replaced the Waitlist table
+    public static synchronized void invalidate() {
+        waited = null;
+    }
+
+    // Wait for allocations already triggered to finish, called once when the application exits. Capacity that
+    // appears afterwards is not allocated.
+    public static void shutdown() {
+        allocator.shutdown();
+        try {
+            allocator.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void allocateLater(List<Date> dates) {
+        if (dates.isEmpty() || allocator.isShutdown()) {
+            return;
+        }
+        try {
+            allocator.execute(() -> {
+                try {
+                    for (Date d : dates) {
+                        allocate(d);
+                    }
+                } catch (SQLException e) {
+                    System.out.println("Error occurred when allocating the waitlist");
+                    e.printStackTrace();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down in the meantime
+        }
+    }
+
+    // The waited dates, loading them if this is the first use
+    private static Map<Date, Set<String>> waited() throws SQLException {
+        Map<Date, Set<String>> dates = waited;
+        if (dates != null) {
+            return dates;
+        }
+        synchronized (Waitlist.class) {
+            if (waited == null) {
+                WaitlistRepository waitlist = Storages.get().waitlist();
+                Map<Date, Set<String>> loaded = new ConcurrentHashMap<>();
+                for (Date d : waitlist.findDates(null)) {
+                    Set<String> vaccines = ConcurrentHashMap.newKeySet();
+                    List<Waiter> page;
+                    int afterId = 0;
+                    do {
+                        page = waitlist.findWaiting(d, afterId, LOAD_PAGE);
+                        for (Waiter waiter : page) {
+                            vaccines.add(waiter.getVaccineName());
+                            afterId = waiter.getWaiterId();
+                        }
+                    } while (page.size() == LOAD_PAGE);
+                    loaded.put(d, vaccines);
+                }
+                waited = loaded;
+            }
+            return waited;
+        }
+    }
+
+    // The waited dates for the capacity hooks, which can't fail the change that was already committed
+    private static Map<Date, Set<String>> waitedOrNull() {
+        try {
+            return waited();
+        } catch (SQLException e) {
+            System.out.println("Error occurred when loading the waitlist");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Allocate the date's waiters, then stop tracking the date if nobody waits for it anymore
+    static List<Appointment> allocate(Date time) throws SQLException {
+        List<Appointment> booked = book(time);
+        synchronized (Waitlist.class) {
+            // under the lock so that a join for the date can't be forgotten between the query and the removal
+            Map<Date, Set<String>> dates = waited;
+            if (dates != null && Storages.get().waitlist().findWaiting(time, 0, 1).isEmpty()) {
+                dates.remove(time);
+            }
+        }
+        return booked;
+    }
+
+    // Book as many of the date's waiters as there are free caregivers and doses, oldest first. Waiters whose
+    // vaccine has run out are passed over and keep their place. Returns the appointments made.
+    private static List<Appointment> book(Date time) throws SQLException {
+        WaitlistRepository waitlist = Storages.get().waitlist();
+        AvailabilityIndex index = AvailabilityIndex.getInstance();
+        DoseInventory inventory = DoseInventory.getInstance();
+        List<Appointment> booked = new ArrayList<>();
+        int afterId = 0;
+        while (true) {
+            int limit = Math.min(index.getAvailableCount(time), ALLOCATION_BATCH);
+            if (limit == 0) {
+                return booked;
+            }
+            // take a dose for each waiter that can have one, as reserve does before claiming a slot
+            List<Waiter> picked = new ArrayList<>(limit);
+            boolean more = true;
+            while (more && picked.size() < limit) {
+                List<Waiter> page = waitlist.findWaiting(time, afterId, limit);
+                more = page.size() == limit;
+                for (Waiter waiter : page) {
+                    if (picked.size() == limit) {
+                        more = true;
+                        break;
+                    }
+                    afterId = waiter.getWaiterId();
+                    try {
+                        inventory.takeDoses(waiter.getVaccineName(), 1);
+                        picked.add(waiter);
+                    } catch (IllegalStateException e) {
+                        // no dose for this one yet
+                    }
+                }
+            }
+            if (picked.isEmpty()) {
+                return booked;
+            }
+
+            List<Appointment> made = Collections.emptyList();
+            try {
+                made = waitlist.allocate(time, picked);
+            } finally {
+                // give back the doses of waiters who didn't get a slot after all
+                Set<String> served = new HashSet<>();
+                for (Appointment appointment : made) {
+                    AvailabilityIndex.slotBooked(time, appointment.getCaregiverName());
+                    EventBus.appointmentBooked(appointment);
+                    served.add(appointment.getPatientName() + " " + appointment.getVaccineName());
+                }
+                for (Waiter waiter : picked) {
+                    if (!served.contains(waiter.getPatientName() + " " + waiter.getVaccineName())) {
+                        inventory.returnDoses(waiter.getVaccineName(), 1);
+                    }
+                }
+            }
+            booked.addAll(made);
+            if (made.size() < picked.size()) {
+                // the slots ran out
+                return booked;
+            }
+        }
+    }
+}
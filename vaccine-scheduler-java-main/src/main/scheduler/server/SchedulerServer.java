@@ -0,0 +1,129 @@
+package scheduler.server;
+
+import scheduler.Session;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Serves the scheduler commands over a plain TCP line protocol: every line a client sends is run as one
+// command and the replies are written back on the same connection. Each connection gets its own Session, so
+// every client logs in independently of the others.
+public class SchedulerServer {
+
+    // longest command line a client may send; a longer one closes its connection
+    private static final int MAX_LINE_CHARS = 8192;
+
+    private final int port;
+    private final ExecutorService executor;
+    private final AtomicInteger openSessions = new AtomicInteger();
+    private volatile ServerSocket serverSocket = null;
+
+    public SchedulerServer(int port) {
+        this.port = port;
+        this.executor = newSessionExecutor();
+    }
+
+    // Accept connections until the server is stopped
+    public void run() throws IOException {
+        serverSocket = new ServerSocket(port);
+        System.out.println("Scheduler server listening on port " + serverSocket.getLocalPort());
+        try {
+            while (!serverSocket.isClosed()) {
+                Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    if (serverSocket.isClosed()) {
+                        break;
+                    }
+                    throw e;
+                }
+                executor.execute(() -> serve(socket));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void stop() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+    }
+
+    public int getOpenSessions() {
+        return openSessions.get();
+    }
+
+    private void serve(Socket socket) {
+        openSessions.incrementAndGet();
+        try (Socket s = socket;
+             BufferedReader in = new BufferedReader(
+                     new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(s.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            Session session = new Session(out, true);
+            try {
+                session.printWelcome();
+                StringBuilder line = new StringBuilder();
+                while (session.execute(readLine(in, line))) {
+                    out.flush();
+                }
+            } catch (LineTooLongException e) {
+                out.println("Line too long, closing the connection.");
+            } catch (RuntimeException e) {
+                out.println("Error occurred when running the command, closing the connection.");
+                System.out.println("Error occurred when serving " + s.getRemoteSocketAddress());
+                e.printStackTrace();
+            }
+        } catch (IOException e) {
+            // the client went away, its session ends with the connection
+        } finally {
+            openSessions.decrementAndGet();
+        }
+    }
+
+    // The next line from the client without its line break, or null at the end of the input. Unlike
+    // BufferedReader.readLine it doesn't buffer a line of any length: it throws LineTooLongException once the line
+    // passes MAX_LINE_CHARS.
+    private static String readLine(BufferedReader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int end = line.length();
+                return end > 0 && line.charAt(end - 1) == '\r' ? line.substring(0, end - 1) : line.toString();
+            }
+            if (line.length() == MAX_LINE_CHARS) {
+                throw new LineTooLongException();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    private static class LineTooLongException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Sessions spend almost all of their time blocked on the client or the database, so they run one per
+    // thread. Virtual threads are used when the JDK has them (21+); older JDKs fall back to a cached pool.
+    private static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "scheduler-session");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+}
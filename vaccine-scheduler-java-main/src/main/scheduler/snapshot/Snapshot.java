@@ -0,0 +1,86 @@
+package scheduler.snapshot;
+
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.DoseInventory;
+import scheduler.model.Caregiver;
+import scheduler.model.Patient;
+import scheduler.model.Waitlist;
+import scheduler.storage.SnapshotRepository;
+import scheduler.storage.Storages;
+import scheduler.storage.Table;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+// export_snapshot and import_snapshot: every table of the current storage to a file and back, in the format of
+// SnapshotWriter. Neither holds more than a block of rows in memory. A snapshot is only consistent if nothing
+// changes the tables while it is exported.
+public class Snapshot {
+
+    private Snapshot() {
+    }
+
+    // Write every table to the file and return the number of rows written
+    public static long export(Path file) throws IOException, SQLException {
+        // doses still held by the inventory belong in the snapshot
+        DoseInventory.getInstance().flush();
+
+        SnapshotRepository snapshots = Storages.get().snapshots();
+        long count = 0;
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+             SnapshotWriter writer = new SnapshotWriter(out)) {
+            for (Table table : Table.values()) {
+                writer.beginTable(table);
+                long[] rows = {0};
+                snapshots.forEachRow(table, row -> {
+                    try {
+                        writer.writeRow(row);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    rows[0]++;
+                });
+                writer.endTable();
+                count += rows[0];
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return count;
+    }
+
+    // Insert every table of the file and return the number of rows inserted. Throws IllegalStateException with a
+    // user-facing message unless the storage is empty.
+    public static long restore(Path file) throws IOException, SQLException {
+        SnapshotRepository snapshots = Storages.get().snapshots();
+        if (!snapshots.isEmpty()) {
+            throw new IllegalStateException("The database must be empty to import a snapshot!");
+        }
+
+        long count = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+             SnapshotReader reader = new SnapshotReader(in)) {
+            Table table;
+            while ((table = reader.nextTable()) != null) {
+                count += snapshots.insertRows(table, reader.rows());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // whatever was loaded before the import is out of date, even if it failed halfway
+            AvailabilityIndex.invalidate();
+            DoseInventory.shutdown();
+            Waitlist.invalidate();
+            Patient.getCredentialCache().invalidateAll();
+            Caregiver.getCredentialCache().invalidateAll();
+        }
+        return count;
+    }
+}
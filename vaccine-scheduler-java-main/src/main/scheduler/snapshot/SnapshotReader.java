@@ -0,0 +1,264 @@
+package scheduler.snapshot;
+
+import scheduler.storage.Table;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+// Reads a file written by SnapshotWriter one table at a time. A table's rows are decoded a block at a time as they
+// are iterated, so a file of any size is read in constant memory.
+public class SnapshotReader implements Closeable {
+
+    private final Inflater inflater = new Inflater();
+    private final DataInputStream in;
+
+    private Table table = null;
+    private RowIterator rows = null;
+    private boolean ended = false;
+
+    // Throws IOException if the stream doesn't start like a snapshot of this version
+    public SnapshotReader(InputStream in) throws IOException {
+        byte[] magic = new byte[SnapshotWriter.MAGIC.length];
+        int read = in.readNBytes(magic, 0, magic.length);
+        if (read != magic.length || !Arrays.equals(magic, SnapshotWriter.MAGIC)) {
+            throw new IOException("Not a snapshot file");
+        }
+        int version = in.read();
+        if (version != SnapshotWriter.VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        this.in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(in, inflater, 1 << 16), 1 << 16));
+    }
+
+    // The next table in the file, or null after the last one. The rows of the previous table that weren't read
+    // are skipped.
+    public Table nextTable() throws IOException {
+        if (ended) {
+            return null;
+        }
+        if (rows != null) {
+            while (rows.hasNextBlock()) {
+                rows.readBlock();
+            }
+            rows = null;
+        }
+        int marker = in.readUnsignedByte();
+        if (marker == SnapshotWriter.END_MARKER) {
+            ended = true;
+            return null;
+        }
+        if (marker != SnapshotWriter.TABLE_MARKER) {
+            throw new IOException("Corrupt snapshot: unexpected marker " + marker);
+        }
+        String name = readString();
+        table = Table.fromSqlName(name);
+        if (table == null) {
+            throw new IOException("Unknown table in snapshot: " + name);
+        }
+        List<Table.Column> columns = table.getColumns();
+        int count = readVarInt();
+        if (count != columns.size()) {
+            throw new IOException("Snapshot has " + count + " column(s) for " + name + ", expected " +
+                    columns.size());
+        }
+        for (Table.Column column : columns) {
+            String columnName = readString();
+            int type = in.readUnsignedByte();
+            if (!columnName.equals(column.getName()) || type != column.getType().ordinal()) {
+                throw new IOException("Snapshot column " + name + "." + columnName + " doesn't match create.sql");
+            }
+        }
+        rows = new RowIterator(columns);
+        return table;
+    }
+
+    // The rows of the table nextTable returned. IOExceptions are thrown as UncheckedIOException.
+    public Iterator<Object[]> rows() {
+        if (rows == null) {
+            throw new IllegalStateException("No table to read");
+        }
+        return rows;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            in.close();
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private class RowIterator implements Iterator<Object[]> {
+        private final List<Table.Column> columns;
+        private Object[][] block = new Object[0][];
+        private int size = 0;
+        private int next = 0;
+        private boolean last = false;
+
+        private RowIterator(List<Table.Column> columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public boolean hasNext() {
+            try {
+                while (next == size && hasNextBlock()) {
+                    readBlock();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return next < size;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Object[] row = new Object[block.length];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = block[i][next];
+            }
+            next++;
+            return row;
+        }
+
+        private boolean hasNextBlock() {
+            return !last;
+        }
+
+        private void readBlock() throws IOException {
+            int count = readVarInt();
+            if (count == 0) {
+                last = true;
+                size = 0;
+                next = 0;
+                return;
+            }
+            if (count < 0 || count > SnapshotWriter.BLOCK_ROWS) {
+                throw new IOException("Corrupt snapshot: block of " + count + " rows");
+            }
+            block = new Object[columns.size()][];
+            for (int i = 0; i < block.length; i++) {
+                block[i] = readColumn(count, columns.get(i).getType());
+            }
+            size = count;
+            next = 0;
+        }
+    }
+
+    private Object[] readColumn(int count, Table.Type type) throws IOException {
+        boolean[] nulls = readNulls(count);
+        Object[] values = new Object[count];
+        switch (type) {
+            case INT:
+            case DATE:
+                long previous = 0;
+                Object previousValue = null;
+                for (int r = 0; r < count; r++) {
+                    if (nulls == null || !nulls[r]) {
+                        long zigzag = readVarLong();
+                        long value = previous + ((zigzag >>> 1) ^ -(zigzag & 1));
+                        // sorted dates come in long runs of the same day, which can share one Date
+                        if (previousValue == null || value != previous) {
+                            previousValue = type == Table.Type.INT
+                                    ? (Object) (int) value
+                                    : Date.valueOf(LocalDate.ofEpochDay(value));
+                        }
+                        values[r] = previousValue;
+                        previous = value;
+                    }
+                }
+                break;
+            case STRING:
+                List<String> seen = new ArrayList<>();
+                for (int r = 0; r < count; r++) {
+                    if (nulls == null || !nulls[r]) {
+                        int index = readVarInt();
+                        if (index == 0) {
+                            String value = readString();
+                            seen.add(value);
+                            values[r] = value;
+                        } else if (index <= seen.size()) {
+                            values[r] = seen.get(index - 1);
+                        } else {
+                            throw new IOException("Corrupt snapshot: string " + index + " of " + seen.size());
+                        }
+                    }
+                }
+                break;
+            default:
+                for (int r = 0; r < count; r++) {
+                    if (nulls == null || !nulls[r]) {
+                        byte[] value = new byte[readLength()];
+                        in.readFully(value);
+                        values[r] = value;
+                    }
+                }
+                break;
+        }
+        return values;
+    }
+
+    // Which rows of the column are null, or null if none are
+    private boolean[] readNulls(int count) throws IOException {
+        if (in.readUnsignedByte() == 0) {
+            return null;
+        }
+        byte[] bitmap = new byte[(count + 7) / 8];
+        in.readFully(bitmap);
+        boolean[] nulls = new boolean[count];
+        for (int r = 0; r < count; r++) {
+            nulls[r] = (bitmap[r >> 3] & (1 << (r & 7))) != 0;
+        }
+        return nulls;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readLength()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // A length, checked so that a corrupt file can't make us allocate a huge array
+    private int readLength() throws IOException {
+        int length = readVarInt();
+        if (length < 0 || length > 1 << 20) {
+            throw new IOException("Corrupt snapshot: length " + length);
+        }
+        return length;
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt snapshot: varint too long");
+    }
+}
@@ -0,0 +1,196 @@
+package scheduler.snapshot;
+
+import scheduler.storage.Table;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+// Writes a snapshot file. After MAGIC and VERSION everything is deflate compressed:
+//
+//   per table:  TABLE_MARKER, name, column count, per column its name and Table.Type ordinal,
+//               then blocks of up to BLOCK_ROWS rows, each the row count followed by every column in turn,
+//               and a row count of 0 after the last block
+//   at the end: END_MARKER
+//
+// A column of a block is a flag saying whether it has nulls (then a bitmap of them) and its non-null values:
+// INT and DATE (as an epoch day) as the zigzag varint difference from the previous value, STRING as the varint
+// index + 1 of the same string earlier in the block or 0 followed by the new string, and BINARY as a varint length
+// and the bytes. Storing a block column by column keeps like values together, which compresses much better than
+// rows, and sorted ids and dates shrink to a byte each.
+public class SnapshotWriter implements Closeable {
+
+    static final byte[] MAGIC = "VSNAP".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int TABLE_MARKER = 1;
+    static final int END_MARKER = 0;
+    // rows buffered and written as one block
+    static final int BLOCK_ROWS = 65536;
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final DataOutputStream out;
+
+    private Table table = null;
+    private Object[][] block = null;
+    private int rows = 0;
+
+    public SnapshotWriter(OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        this.out = new DataOutputStream(new BufferedOutputStream(
+                new DeflaterOutputStream(out, deflater, 1 << 16), 1 << 16));
+    }
+
+    // Start writing the rows of a table
+    public void beginTable(Table table) throws IOException {
+        if (this.table != null) {
+            throw new IllegalStateException("Table " + this.table.getSqlName() + " was not ended");
+        }
+        List<Table.Column> columns = table.getColumns();
+        out.writeByte(TABLE_MARKER);
+        writeString(table.getSqlName());
+        writeVarInt(columns.size());
+        for (Table.Column column : columns) {
+            writeString(column.getName());
+            out.writeByte(column.getType().ordinal());
+        }
+        this.table = table;
+        this.block = new Object[columns.size()][BLOCK_ROWS];
+        this.rows = 0;
+    }
+
+    // Add a row of the current table, one value per column
+    public void writeRow(Object[] row) throws IOException {
+        for (int i = 0; i < block.length; i++) {
+            block[i][rows] = row[i];
+        }
+        rows++;
+        if (rows == BLOCK_ROWS) {
+            writeBlock();
+        }
+    }
+
+    public void endTable() throws IOException {
+        writeBlock();
+        writeVarInt(0);
+        table = null;
+        block = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            out.writeByte(END_MARKER);
+            out.close();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (rows == 0) {
+            return;
+        }
+        writeVarInt(rows);
+        List<Table.Column> columns = table.getColumns();
+        for (int i = 0; i < block.length; i++) {
+            writeColumn(block[i], columns.get(i).getType());
+        }
+        for (Object[] values : block) {
+            Arrays.fill(values, 0, rows, null);
+        }
+        rows = 0;
+    }
+
+    private void writeColumn(Object[] values, Table.Type type) throws IOException {
+        writeNulls(values);
+        switch (type) {
+            case INT:
+            case DATE:
+                long previous = 0;
+                for (int r = 0; r < rows; r++) {
+                    if (values[r] != null) {
+                        long value = type == Table.Type.INT
+                                ? (Integer) values[r]
+                                : ((Date) values[r]).toLocalDate().toEpochDay();
+                        long delta = value - previous;
+                        writeVarLong((delta << 1) ^ (delta >> 63));
+                        previous = value;
+                    }
+                }
+                break;
+            case STRING:
+                Map<String, Integer> seen = new HashMap<>();
+                for (int r = 0; r < rows; r++) {
+                    if (values[r] != null) {
+                        String value = (String) values[r];
+                        Integer index = seen.putIfAbsent(value, seen.size());
+                        if (index != null) {
+                            writeVarInt(index + 1);
+                        } else {
+                            writeVarInt(0);
+                            writeString(value);
+                        }
+                    }
+                }
+                break;
+            default:
+                for (int r = 0; r < rows; r++) {
+                    if (values[r] != null) {
+                        byte[] value = (byte[]) values[r];
+                        writeVarInt(value.length);
+                        out.write(value);
+                    }
+                }
+                break;
+        }
+    }
+
+    // 0 if the column has no nulls, otherwise 1 followed by a bitmap with a bit set per null
+    private void writeNulls(Object[] values) throws IOException {
+        boolean anyNull = false;
+        for (int r = 0; r < rows && !anyNull; r++) {
+            anyNull = values[r] == null;
+        }
+        if (!anyNull) {
+            out.writeByte(0);
+            return;
+        }
+        out.writeByte(1);
+        byte[] bitmap = new byte[(rows + 7) / 8];
+        for (int r = 0; r < rows; r++) {
+            if (values[r] == null) {
+                bitmap[r >> 3] |= (byte) (1 << (r & 7));
+            }
+        }
+        out.write(bitmap);
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,42 @@
+package scheduler.storage;
+
+import java.sql.Date;
+
+// A page of one user's appointments: at most limit appointments with an id greater than afterId, in id order,
+// optionally only those from one date to another (inclusive). The last id of a page is the afterId of the next.
+public class AppointmentQuery {
+    private final int afterId;
+    private final int limit;
+    private final Date from;
+    private final Date to;
+
+    // from and to may be null for no bound
+    public AppointmentQuery(int afterId, int limit, Date from, Date to) {
+        this.afterId = afterId;
+        this.limit = limit;
+        this.from = from;
+        this.to = to;
+    }
+
+    // Getters
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    // Whether an appointment on the given date falls inside the date range
+    public boolean covers(Date time) {
+        return (from == null || !time.before(from)) && (to == null || !time.after(to));
+    }
+}
@@ -0,0 +1,50 @@
+package scheduler.storage;
+
+import scheduler.model.Appointment;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// The Appointments table, together with the Availabilities rows the appointments claim
+public interface AppointmentRepository {
+    // Atomically claim a free slot on the date and book it. Which free caregiver gets it is up to the SlotSelection
+    // the repository was created with: the first by username (waiting for or skipping slots other reservations
+    // hold), the next after the one picked last, a random one or the least loaded one. Returns null if no
+    // caregiver is free, in which case nothing is changed. Doses are not touched here.
+    Appointment reserve(Date time, String patient, String vaccine) throws SQLException;
+
+    // Atomically claim a free slot on the earliest date from one date to another (inclusive, to may be null for no
+    // end) that has one, picked the same way as reserve picks it, and book it. Returns null if no caregiver is free
+    // on any of those dates, in which case nothing is changed. Doses are not touched here.
+    Appointment reserveEarliest(Date from, Date to, String patient, String vaccine) throws SQLException;
+
+    // Book many planned appointments, each in the slot of its own caregiver and date, in one transaction. Returns
+    // whether each was booked; one whose slot is no longer free is skipped. The ids of the planned appointments
+    // are ignored, the table assigns them. Doses are not touched here.
+    boolean[] bookAll(List<Appointment> planned) throws SQLException;
+
+    // Atomically delete the appointment, free its caregiver's slot and give its dose back to the vaccine. Only an
+    // appointment of the given patient or caregiver (one of them may be null) is cancelled. Returns the cancelled
+    // appointment, or null if there is no such appointment of theirs.
+    Appointment cancel(int appointmentId, String patient, String caregiver) throws SQLException;
+
+    // Atomically cancel every appointment of the caregiver from one date to another (inclusive), give their
+    // doses back and withdraw the caregiver's slots on those dates so that nobody else books them. Returns the
+    // cancelled appointments in id order.
+    List<Appointment> cancelAll(String caregiver, Date from, Date to) throws SQLException;
+
+    // Stream one page of the caregiver's appointments to the consumer, returning how many there were
+    int forEachOfCaregiver(String caregiver, AppointmentQuery query, Consumer<Appointment> consumer)
+            throws SQLException;
+
+    // Stream one page of the patient's appointments to the consumer, returning how many there were
+    int forEachOfPatient(String patient, AppointmentQuery query, Consumer<Appointment> consumer) throws SQLException;
+
+    // Call the consumer with the patient and date of every appointment from one date to another (inclusive) of the
+    // given patients, looked up in a few large queries rather than one per patient
+    void forEachOfPatients(List<String> patients, Date from, Date to, BiConsumer<String, Date> consumer)
+            throws SQLException;
+}
@@ -0,0 +1,23 @@
+package scheduler.storage;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// The Availabilities table: one slot per caregiver and date, free until an appointment claims it
+public interface AvailabilityRepository {
+    // Publish a free slot, failing if the caregiver already has one on that date
+    void insert(Date time, String caregiver) throws SQLException;
+
+    // Publish many slots at once. Returns whether each date was added; dates that are already published (or
+    // repeated in the list) are skipped.
+    boolean[] insertAll(String caregiver, List<Date> dates) throws SQLException;
+
+    // Call the consumer with the date and caregiver of every free slot
+    void forEachFree(BiConsumer<Date, String> consumer) throws SQLException;
+
+    // Call the consumer with every date from one to another (inclusive) on which the caregiver has a free slot
+    void forEachFreeOf(String caregiver, Date from, Date to, Consumer<Date> consumer) throws SQLException;
+}
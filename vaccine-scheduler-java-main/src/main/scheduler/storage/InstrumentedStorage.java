@@ -0,0 +1,106 @@
+package scheduler.storage;
+
+import scheduler.metrics.Metrics;
+import scheduler.metrics.Timer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+// Wraps a backend so that every repository call is timed as query.<repository>.<method>, with a thrown exception
+// counted as an error. Storages only wraps the backend when metrics are enabled.
+class InstrumentedStorage implements Storage {
+
+    private final Storage storage;
+    private final UserRepository patients;
+    private final UserRepository caregivers;
+    private final AvailabilityRepository availabilities;
+    private final VaccineRepository vaccines;
+    private final AppointmentRepository appointments;
+    private final WaitlistRepository waitlist;
+    private final SnapshotRepository snapshots;
+
+    InstrumentedStorage(Storage storage) {
+        this.storage = storage;
+        this.patients = instrument(UserRepository.class, storage.patients(), "patients");
+        this.caregivers = instrument(UserRepository.class, storage.caregivers(), "caregivers");
+        this.availabilities = instrument(AvailabilityRepository.class, storage.availabilities(), "availabilities");
+        this.vaccines = instrument(VaccineRepository.class, storage.vaccines(), "vaccines");
+        this.appointments = instrument(AppointmentRepository.class, storage.appointments(), "appointments");
+        this.waitlist = instrument(WaitlistRepository.class, storage.waitlist(), "waitlist");
+        this.snapshots = instrument(SnapshotRepository.class, storage.snapshots(), "snapshots");
+    }
+
+    @Override
+    public String getName() {
+        return storage.getName();
+    }
+
+    @Override
+    public UserRepository patients() {
+        return patients;
+    }
+
+    @Override
+    public UserRepository caregivers() {
+        return caregivers;
+    }
+
+    @Override
+    public AvailabilityRepository availabilities() {
+        return availabilities;
+    }
+
+    @Override
+    public VaccineRepository vaccines() {
+        return vaccines;
+    }
+
+    @Override
+    public AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    @Override
+    public WaitlistRepository waitlist() {
+        return waitlist;
+    }
+
+    @Override
+    public SnapshotRepository snapshots() {
+        return snapshots;
+    }
+
+    @Override
+    public void close() {
+        storage.close();
+    }
+
+    private static <T> T instrument(Class<T> type, T repository, String name) {
+        // one timer per method, looked up once here rather than on every call
+        Map<Method, Timer> timers = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            timers.put(method, Metrics.timer("query." + name + "." + method.getName()));
+        }
+        InvocationHandler handler = (proxy, method, args) -> {
+            Timer timer = timers.get(method);
+            if (timer == null) {
+                // toString, equals and hashCode
+                return method.invoke(repository, args);
+            }
+            long start = timer.start();
+            try {
+                Object result = method.invoke(repository, args);
+                timer.stop(start);
+                return result;
+            } catch (InvocationTargetException e) {
+                timer.fail(start);
+                throw e.getCause();
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+}
@@ -0,0 +1,25 @@
+package scheduler.storage;
+
+// How reserve picks among the free caregivers of a date, chosen by the SlotSelection environment variable.
+// Every strategy but FIRST skips slots that a concurrent reservation is in the middle of claiming instead of
+// waiting for it, so reservations for the same date don't queue up behind one row.
+public enum SlotSelection {
+    // the first free caregiver by username, waiting for a slot another reservation holds
+    FIRST,
+    // the first free caregiver by username that no other reservation holds (the default)
+    SKIP_LOCKED,
+    // the next free caregiver by username after the one picked last, wrapping around
+    ROUND_ROBIN,
+    // any free caregiver
+    RANDOM,
+    // the free caregiver with the fewest appointments
+    LEAST_LOADED;
+
+    public static SlotSelection fromEnv() {
+        String value = System.getenv("SlotSelection");
+        if (value == null || value.trim().isEmpty()) {
+            return SKIP_LOCKED;
+        }
+        return valueOf(value.trim().toUpperCase());
+    }
+}
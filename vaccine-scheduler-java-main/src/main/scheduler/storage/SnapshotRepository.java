@@ -0,0 +1,19 @@
+package scheduler.storage;
+
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+// Every row of every Table at once, for export_snapshot and import_snapshot. A row holds one value per column, in
+// the order of Table.getColumns().
+public interface SnapshotRepository {
+    // Whether every table is empty, which an import requires
+    boolean isEmpty() throws SQLException;
+
+    // Stream every row of the table to the consumer, in primary key order
+    void forEachRow(Table table, Consumer<Object[]> consumer) throws SQLException;
+
+    // Insert the rows, keeping their ids, and return how many there were. Rows are read from the iterator as they
+    // are inserted, so they never all have to be in memory.
+    long insertRows(Table table, Iterator<Object[]> rows) throws SQLException;
+}
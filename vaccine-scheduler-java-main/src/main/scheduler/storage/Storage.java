@@ -0,0 +1,24 @@
+package scheduler.storage;
+
+// Where the scheduler keeps its data. Each backend provides one repository per table; the rest of the code only
+// talks to these interfaces, so the same commands run against SQL Server or entirely in memory.
+public interface Storage {
+    String getName();
+
+    UserRepository patients();
+
+    UserRepository caregivers();
+
+    AvailabilityRepository availabilities();
+
+    VaccineRepository vaccines();
+
+    AppointmentRepository appointments();
+
+    WaitlistRepository waitlist();
+
+    SnapshotRepository snapshots();
+
+    // Release whatever the backend holds, e.g. pooled connections
+    void close();
+}
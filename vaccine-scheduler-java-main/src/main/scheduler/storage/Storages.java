@@ -0,0 +1,46 @@
+package scheduler.storage;
+
+import scheduler.metrics.Metrics;
+import scheduler.storage.memory.MemoryStorage;
+import scheduler.storage.sqlserver.SqlServerStorage;
+
+// Holds the storage backend the process uses. It is chosen by the Storage environment variable: "sqlserver" (the
+// default) or "memory", which keeps everything in this process and needs no database at all. When metrics are
+// enabled the backend is wrapped so that its calls are timed.
+public class Storages {
+
+    private static Storage storage = null;
+
+    public static synchronized Storage get() {
+        if (storage == null) {
+            storage = create(System.getenv("Storage"));
+            if (Metrics.isEnabled()) {
+                storage = new InstrumentedStorage(storage);
+            }
+        }
+        return storage;
+    }
+
+    // Use the given backend from now on, e.g. a fresh in-memory one for every benchmark run
+    public static synchronized void set(Storage newStorage) {
+        storage = newStorage;
+    }
+
+    // Close the backend, called once when the application exits
+    public static synchronized void shutdown() {
+        if (storage != null) {
+            storage.close();
+            storage = null;
+        }
+    }
+
+    public static Storage create(String name) {
+        if (name == null || name.trim().isEmpty() || name.trim().equalsIgnoreCase("sqlserver")) {
+            return new SqlServerStorage();
+        }
+        if (name.trim().equalsIgnoreCase("memory")) {
+            return new MemoryStorage();
+        }
+        throw new IllegalArgumentException("Unknown storage: " + name);
+    }
+}
@@ -0,0 +1,87 @@
+package scheduler.storage;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The tables of create.sql that hold the scheduling state, in foreign key order, with the columns a snapshot
+// keeps. JournalApplied is left out since it describes one process's local journal rather than the data.
+public enum Table {
+    CAREGIVERS("Caregivers", "Username",
+            new Column("Username", Type.STRING), new Column("Salt", Type.BINARY),
+            new Column("Hash", Type.BINARY), new Column("HashSpec", Type.STRING)),
+    PATIENTS("Patients", "Username",
+            new Column("Username", Type.STRING), new Column("Salt", Type.BINARY),
+            new Column("Hash", Type.BINARY), new Column("HashSpec", Type.STRING)),
+    VACCINES("Vaccines", "Name",
+            new Column("Name", Type.STRING), new Column("Doses", Type.INT)),
+    AVAILABILITIES("Availabilities", "Time, Username",
+            new Column("Time", Type.DATE), new Column("Username", Type.STRING), new Column("Available", Type.INT)),
+    APPOINTMENTS("Appointments", "Appointment_id",
+            new Column("Appointment_id", Type.INT), new Column("Time", Type.DATE),
+            new Column("P_Username", Type.STRING), new Column("C_Username", Type.STRING),
+            new Column("V_Name", Type.STRING)),
+    WAITLIST("Waitlist", "Waitlist_id",
+            new Column("Waitlist_id", Type.INT), new Column("Time", Type.DATE),
+            new Column("V_Name", Type.STRING), new Column("P_Username", Type.STRING));
+
+    private final String sqlName;
+    private final String primaryKey;
+    private final List<Column> columns;
+
+    Table(String sqlName, String primaryKey, Column... columns) {
+        this.sqlName = sqlName;
+        this.primaryKey = primaryKey;
+        this.columns = Arrays.asList(columns);
+    }
+
+    // Getters
+    public String getSqlName() {
+        return sqlName;
+    }
+
+    // the primary key columns, comma separated, which is the order rows are exported in
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public List<Column> getColumns() {
+        return columns;
+    }
+
+    // The table with this name in create.sql, or null if it isn't one of these
+    public static Table fromSqlName(String sqlName) {
+        for (Table table : values()) {
+            if (table.sqlName.equals(sqlName)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    // How a column's values are held in a row: String, byte[], java.sql.Date or Integer. Any value may be null.
+    public enum Type {
+        STRING,
+        BINARY,
+        DATE,
+        INT
+    }
+
+    public static class Column {
+        private final String name;
+        private final Type type;
+
+        Column(String name, Type type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        // Getters
+        public String getName() {
+            return name;
+        }
+
+        public Type getType() {
+            return type;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package scheduler.storage;
+
+import scheduler.model.Credentials;
+
+import java.sql.SQLException;
+import java.util.List;
+
+// The Patients or the Caregivers table
+public interface UserRepository {
+    // The user's credentials, or null if there is no such user
+    Credentials find(String username) throws SQLException;
+
+    // Insert a user, failing if the username is taken
+    void insert(String username, Credentials credentials) throws SQLException;
+
+    // Insert many users at once. Returns whether each user was inserted; a username that is already taken (or
+    // repeated in the list) is skipped instead of failing the others.
+    boolean[] insertAll(List<String> usernames, List<Credentials> credentials) throws SQLException;
+
+    void updateCredentials(String username, Credentials credentials) throws SQLException;
+
+    // Whether each of the usernames exists, checked in a few large queries rather than one per name
+    boolean[] exist(List<String> usernames) throws SQLException;
+}
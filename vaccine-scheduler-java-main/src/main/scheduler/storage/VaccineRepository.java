@@ -0,0 +1,31 @@
+package scheduler.storage;
+
+import java.sql.SQLException;
+import java.util.Map;
+
+// The Vaccines table
+public interface VaccineRepository {
+    // Doses of every vaccine by name
+    Map<String, Integer> findAll() throws SQLException;
+
+    // Doses of a vaccine, or null if there is no such vaccine
+    Integer findDoses(String name) throws SQLException;
+
+    // Insert a vaccine, failing if it already exists
+    void insert(String name, int doses) throws SQLException;
+
+    // Insert many vaccines at once. Returns whether each one was inserted, in the map's order; vaccines that
+    // already exist are skipped.
+    boolean[] insertAll(Map<String, Integer> doses) throws SQLException;
+
+    // Add a (possibly negative) number of doses to each vaccine in one go
+    void addDoses(Map<String, Long> deltas) throws SQLException;
+
+    // The last journal record applied by addDoses below for the journal with this id, or 0 if there is none
+    long findAppliedSeq(String journalId) throws SQLException;
+
+    // Add the doses of the journal's records after afterSeq up to seq, and record in the same transaction that
+    // they are applied. Returns false, changing nothing, unless the last record applied so far is afterSeq, so
+    // replaying a journal never counts a change twice.
+    boolean addDoses(Map<String, Long> deltas, String journalId, long afterSeq, long seq) throws SQLException;
+}
@@ -0,0 +1,27 @@
+package scheduler.storage;
+
+import scheduler.model.Appointment;
+import scheduler.model.Waiter;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.SortedSet;
+
+// The Waitlist table: patients waiting for a slot on a date, first come first served
+public interface WaitlistRepository {
+    // Put the patient at the end of the queue for the date and vaccine. Returns their position in that queue
+    // (1 for the first), or 0 if they were already waiting for it.
+    int add(Date time, String vaccine, String patient) throws SQLException;
+
+    // Up to limit waiters for the date with an id greater than afterId, oldest first
+    List<Waiter> findWaiting(Date time, int afterId, int limit) throws SQLException;
+
+    // The dates someone is waiting for, only counting waiters for the given vaccine unless it is null
+    SortedSet<Date> findDates(String vaccine) throws SQLException;
+
+    // Atomically book the waiters, in order, into the free slots of the date (by caregiver username) and take
+    // them off the waitlist. Waiters left over when the free slots run out stay waiting. Doses are not touched
+    // here. Returns the appointments made.
+    List<Appointment> allocate(Date time, List<Waiter> waiters) throws SQLException;
+}
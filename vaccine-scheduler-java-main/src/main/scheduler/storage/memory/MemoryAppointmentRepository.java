@@ -0,0 +1,257 @@
+package scheduler.storage.memory;
+
+import scheduler.model.Appointment;
+import scheduler.storage.AppointmentQuery;
+import scheduler.storage.AppointmentRepository;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.memory.MemoryAvailabilityRepository.Slot;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Appointments are indexed by caregiver and by patient, each index in id order
+class MemoryAppointmentRepository implements AppointmentRepository {
+
+    private final MemoryUserRepository patients;
+    private final MemoryAvailabilityRepository availabilities;
+    private final MemoryVaccineRepository vaccines;
+
+    private final SlotSelection selection;
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // the caregiver ROUND_ROBIN picked last, and the number of appointments of each caregiver for LEAST_LOADED
+    private final AtomicReference<String> lastCaregiver = new AtomicReference<>();
+    private final ConcurrentHashMap<String, AtomicInteger> loads = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Appointment> byId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Appointment>> byCaregiver =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Integer, Appointment>> byPatient =
+            new ConcurrentHashMap<>();
+
+    MemoryAppointmentRepository(MemoryUserRepository patients, MemoryAvailabilityRepository availabilities,
+                                MemoryVaccineRepository vaccines, SlotSelection selection) {
+        this.patients = patients;
+        this.availabilities = availabilities;
+        this.vaccines = vaccines;
+        this.selection = selection;
+    }
+
+    @Override
+    public Appointment reserve(Date time, String patient, String vaccine) throws SQLException {
+        // the foreign keys, checked before the slot is claimed so a failure changes nothing
+        if (!patients.exists(patient)) {
+            throw new SQLException("No such patient: " + patient);
+        }
+        if (!vaccines.exists(vaccine)) {
+            throw new SQLException("No such vaccine: " + vaccine);
+        }
+        while (true) {
+            Slot slot = availabilities.claim(time, selection, lastCaregiver.get(), this::load);
+            if (slot == null) {
+                return null;
+            }
+            lastCaregiver.set(slot.getCaregiver());
+            Appointment appointment = book(time, patient, slot, vaccine);
+            if (appointment != null) {
+                return appointment;
+            }
+            // cancel_day withdrew the slot while booking it, try another one
+        }
+    }
+
+    @Override
+    public Appointment reserveEarliest(Date from, Date to, String patient, String vaccine) throws SQLException {
+        if (!patients.exists(patient)) {
+            throw new SQLException("No such patient: " + patient);
+        }
+        if (!vaccines.exists(vaccine)) {
+            throw new SQLException("No such vaccine: " + vaccine);
+        }
+        for (Date time : availabilities.datesBetween(from, to)) {
+            Slot slot;
+            while ((slot = availabilities.claim(time, selection, lastCaregiver.get(), this::load)) != null) {
+                lastCaregiver.set(slot.getCaregiver());
+                Appointment appointment = book(time, patient, slot, vaccine);
+                if (appointment != null) {
+                    return appointment;
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean[] bookAll(List<Appointment> planned) throws SQLException {
+        boolean[] booked = new boolean[planned.size()];
+        for (Appointment appointment : planned) {
+            if (!patients.exists(appointment.getPatientName())) {
+                throw new SQLException("No such patient: " + appointment.getPatientName());
+            }
+            if (!vaccines.exists(appointment.getVaccineName())) {
+                throw new SQLException("No such vaccine: " + appointment.getVaccineName());
+            }
+        }
+        for (int i = 0; i < booked.length; i++) {
+            Appointment appointment = planned.get(i);
+            Slot slot = availabilities.claim(appointment.getTime(), appointment.getCaregiverName());
+            booked[i] = slot != null && book(appointment.getTime(), appointment.getPatientName(), slot,
+                    appointment.getVaccineName()) != null;
+        }
+        return booked;
+    }
+
+    // Record an appointment in a slot that has already been claimed. Returns null if cancelAll withdrew the slot
+    // in the meantime: it may have looked for the caregiver's appointments before this one was recorded, so the
+    // booking is undone here unless cancelAll got to it, in which case it counts as booked and then cancelled.
+    Appointment book(Date time, String patient, Slot slot, String vaccine) {
+        Appointment appointment = new Appointment.AppointmentBuilder(nextId.getAndIncrement(), time, patient,
+                slot.getCaregiver(), vaccine).build();
+        index(appointment);
+        if (slot.isWithdrawn() && byId.remove(appointment.getAppointmentId(), appointment)) {
+            unindex(appointment);
+            return null;
+        }
+        return appointment;
+    }
+
+    // Add an appointment as it was, id included, e.g. from a snapshot. Its slot is expected to be taken already.
+    void restore(Appointment appointment) throws SQLException {
+        if (!patients.exists(appointment.getPatientName())) {
+            throw new SQLException("No such patient: " + appointment.getPatientName());
+        }
+        if (!vaccines.exists(appointment.getVaccineName())) {
+            throw new SQLException("No such vaccine: " + appointment.getVaccineName());
+        }
+        if (byId.containsKey(appointment.getAppointmentId())) {
+            throw new SQLException("Duplicate appointment: " + appointment.getAppointmentId());
+        }
+        nextId.accumulateAndGet(appointment.getAppointmentId() + 1, Math::max);
+        index(appointment);
+    }
+
+    // Call the consumer with every appointment, in id order
+    void forEachAppointment(Consumer<Appointment> consumer) {
+        new TreeMap<>(byId).values().forEach(consumer);
+    }
+
+    boolean isEmpty() {
+        return byId.isEmpty();
+    }
+
+    // byId goes last: cancelling starts by removing from byId, so nothing can be unindexed before it is fully indexed
+    private void index(Appointment appointment) {
+        String caregiver = appointment.getCaregiverName();
+        String patient = appointment.getPatientName();
+        loads.computeIfAbsent(caregiver, k -> new AtomicInteger()).incrementAndGet();
+        byCaregiver.computeIfAbsent(caregiver, k -> new ConcurrentSkipListMap<>())
+                .put(appointment.getAppointmentId(), appointment);
+        byPatient.computeIfAbsent(patient, k -> new ConcurrentSkipListMap<>())
+                .put(appointment.getAppointmentId(), appointment);
+        byId.put(appointment.getAppointmentId(), appointment);
+    }
+
+    @Override
+    public Appointment cancel(int appointmentId, String patient, String caregiver) {
+        Appointment appointment = byId.get(appointmentId);
+        if (appointment == null || !(appointment.getPatientName().equals(patient)
+                || appointment.getCaregiverName().equals(caregiver))) {
+            return null;
+        }
+        // whoever removes it from byId is the one cancelling it
+        if (!byId.remove(appointmentId, appointment)) {
+            return null;
+        }
+        unindex(appointment);
+        availabilities.release(appointment.getTime(), appointment.getCaregiverName());
+        vaccines.addDoses(Collections.singletonMap(appointment.getVaccineName(), 1L));
+        return appointment;
+    }
+
+    @Override
+    public List<Appointment> cancelAll(String caregiver, Date from, Date to) {
+        // withdraw the slots first so no new appointment can be booked in the range while we cancel; a booking
+        // into a slot claimed before this either is recorded before the loop below or undoes itself (see book)
+        availabilities.withdraw(caregiver, from, to);
+        List<Appointment> cancelled = new ArrayList<>();
+        Map<String, Long> doses = new HashMap<>();
+        ConcurrentSkipListMap<Integer, Appointment> appointments = byCaregiver.get(caregiver);
+        if (appointments != null) {
+            for (Appointment appointment : appointments.values()) {
+                if (!appointment.getTime().before(from) && !appointment.getTime().after(to)
+                        && byId.remove(appointment.getAppointmentId(), appointment)) {
+                    unindex(appointment);
+                    cancelled.add(appointment);
+                    doses.merge(appointment.getVaccineName(), 1L, Long::sum);
+                }
+            }
+        }
+        vaccines.addDoses(doses);
+        return cancelled;
+    }
+
+    @Override
+    public int forEachOfCaregiver(String caregiver, AppointmentQuery query, Consumer<Appointment> consumer) {
+        return forEach(byCaregiver.get(caregiver), query, consumer);
+    }
+
+    @Override
+    public int forEachOfPatient(String patient, AppointmentQuery query, Consumer<Appointment> consumer) {
+        return forEach(byPatient.get(patient), query, consumer);
+    }
+
+    @Override
+    public void forEachOfPatients(List<String> patients, Date from, Date to, BiConsumer<String, Date> consumer) {
+        for (String patient : patients) {
+            ConcurrentSkipListMap<Integer, Appointment> appointments = byPatient.get(patient);
+            if (appointments == null) {
+                continue;
+            }
+            for (Appointment appointment : appointments.values()) {
+                if (!appointment.getTime().before(from) && !appointment.getTime().after(to)) {
+                    consumer.accept(patient, appointment.getTime());
+                }
+            }
+        }
+    }
+
+    private int load(String caregiver) {
+        AtomicInteger load = loads.get(caregiver);
+        return load == null ? 0 : load.get();
+    }
+
+    private void unindex(Appointment appointment) {
+        loads.get(appointment.getCaregiverName()).decrementAndGet();
+        byCaregiver.get(appointment.getCaregiverName()).remove(appointment.getAppointmentId());
+        byPatient.get(appointment.getPatientName()).remove(appointment.getAppointmentId());
+    }
+
+    private static int forEach(ConcurrentSkipListMap<Integer, Appointment> appointments, AppointmentQuery query,
+                               Consumer<Appointment> consumer) {
+        if (appointments == null) {
+            return 0;
+        }
+        int count = 0;
+        for (Appointment appointment : appointments.tailMap(query.getAfterId(), false).values()) {
+            if (count == query.getLimit()) {
+                break;
+            }
+            if (query.covers(appointment.getTime())) {
+                consumer.accept(appointment);
+                count++;
+            }
+        }
+        return count;
+    }
+}
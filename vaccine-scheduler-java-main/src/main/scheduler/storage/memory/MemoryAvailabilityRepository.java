@@ -0,0 +1,266 @@
+package scheduler.storage.memory;
+
+import scheduler.storage.AvailabilityRepository;
+import scheduler.storage.SlotSelection;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+// Slots are kept per day in username order, each with a state that reservations claim with a compare-and-set, so
+// two reservations can never get the same slot and no lock is held while searching.
+class MemoryAvailabilityRepository implements AvailabilityRepository {
+
+    private final MemoryUserRepository caregivers;
+
+    // epoch day -> caregiver -> slot
+    private final ConcurrentSkipListMap<Long, ConcurrentSkipListMap<String, Slot>> slots =
+            new ConcurrentSkipListMap<>();
+
+    MemoryAvailabilityRepository(MemoryUserRepository caregivers) {
+        this.caregivers = caregivers;
+    }
+
+    @Override
+    public void insert(Date time, String caregiver) throws SQLException {
+        if (!add(time, caregiver)) {
+            throw new SQLException("Availability already uploaded for " + time);
+        }
+    }
+
+    @Override
+    public boolean[] insertAll(String caregiver, List<Date> dates) throws SQLException {
+        boolean[] inserted = new boolean[dates.size()];
+        for (int i = 0; i < inserted.length; i++) {
+            inserted[i] = add(dates.get(i), caregiver);
+        }
+        return inserted;
+    }
+
+    @Override
+    public void forEachFree(BiConsumer<Date, String> consumer) {
+        for (Map.Entry<Long, ConcurrentSkipListMap<String, Slot>> day : slots.entrySet()) {
+            Date time = Date.valueOf(LocalDate.ofEpochDay(day.getKey()));
+            for (Map.Entry<String, Slot> slot : day.getValue().entrySet()) {
+                if (slot.getValue().isFree()) {
+                    consumer.accept(time, slot.getKey());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void forEachFreeOf(String caregiver, Date from, Date to, Consumer<Date> consumer) {
+        for (Map.Entry<Long, ConcurrentSkipListMap<String, Slot>> day
+                : slots.subMap(toKey(from), true, toKey(to), true).entrySet()) {
+            Slot slot = day.getValue().get(caregiver);
+            if (slot != null && slot.isFree()) {
+                consumer.accept(Date.valueOf(LocalDate.ofEpochDay(day.getKey())));
+            }
+        }
+    }
+
+    // The dates from one to another (inclusive, to may be null for no end) that have slots, earliest first
+    Iterable<Date> datesBetween(Date from, Date to) {
+        NavigableMap<Long, ConcurrentSkipListMap<String, Slot>> days = to == null
+                ? slots.tailMap(toKey(from), true)
+                : slots.subMap(toKey(from), true, toKey(to), true);
+        return () -> new Iterator<Date>() {
+            private final Iterator<Long> keys = days.keySet().iterator();
+
+            @Override
+            public boolean hasNext() {
+                return keys.hasNext();
+            }
+
+            @Override
+            public Date next() {
+                return Date.valueOf(LocalDate.ofEpochDay(keys.next()));
+            }
+        };
+    }
+
+    // Claim the free slot of the first caregiver on the date, returning it or null if none is free
+    Slot claimFirst(Date time) {
+        ConcurrentSkipListMap<String, Slot> day = slots.get(toKey(time));
+        return day == null ? null : claimFirst(day);
+    }
+
+    // Claim a free slot on the date picked by the selection, returning it or null if none is free. after is the
+    // caregiver ROUND_ROBIN picked last, load counts a caregiver's appointments for LEAST_LOADED.
+    Slot claim(Date time, SlotSelection selection, String after, ToIntFunction<String> load) {
+        ConcurrentSkipListMap<String, Slot> day = slots.get(toKey(time));
+        if (day == null) {
+            return null;
+        }
+        switch (selection) {
+            case ROUND_ROBIN:
+                if (after != null) {
+                    Slot slot = claimFirst(day.tailMap(after, false));
+                    if (slot != null) {
+                        return slot;
+                    }
+                }
+                return claimFirst(day);
+            case RANDOM:
+            case LEAST_LOADED:
+                while (true) {
+                    List<Slot> free = new ArrayList<>();
+                    day.forEach((caregiver, slot) -> {
+                        if (slot.isFree()) {
+                            free.add(slot);
+                        }
+                    });
+                    if (free.isEmpty()) {
+                        return null;
+                    }
+                    Slot pick = selection == SlotSelection.RANDOM
+                            ? free.get(ThreadLocalRandom.current().nextInt(free.size()))
+                            : Collections.min(free,
+                                    Comparator.comparingInt(slot -> load.applyAsInt(slot.getCaregiver())));
+                    if (pick.claim()) {
+                        return pick;
+                    }
+                    // another reservation got there first, pick again
+                }
+            default:
+                // a lost compare-and-set moves on to the next slot instead of waiting, so FIRST and SKIP_LOCKED
+                // are the same here
+                return claimFirst(day);
+        }
+    }
+
+    private static Slot claimFirst(Map<String, Slot> day) {
+        for (Slot slot : day.values()) {
+            if (slot.claim()) {
+                return slot;
+            }
+        }
+        return null;
+    }
+
+    // Claim the caregiver's slot on the date, returning it or null if it wasn't free
+    Slot claim(Date time, String caregiver) {
+        ConcurrentSkipListMap<String, Slot> day = slots.get(toKey(time));
+        Slot slot = day == null ? null : day.get(caregiver);
+        return slot != null && slot.claim() ? slot : null;
+    }
+
+    // Free a claimed slot again, unless it has been withdrawn
+    void release(Date time, String caregiver) {
+        ConcurrentSkipListMap<String, Slot> day = slots.get(toKey(time));
+        if (day != null) {
+            Slot slot = day.get(caregiver);
+            if (slot != null) {
+                slot.release();
+            }
+        }
+    }
+
+    // Remove the caregiver's slots from one date to another (inclusive). A removed slot is marked withdrawn, so a
+    // reservation that claimed it just before can tell that it must not book into it.
+    void withdraw(String caregiver, Date from, Date to) {
+        for (ConcurrentSkipListMap<String, Slot> day
+                : slots.subMap(toKey(from), true, toKey(to), true).values()) {
+            Slot slot = day.remove(caregiver);
+            if (slot != null) {
+                slot.withdraw();
+            }
+        }
+    }
+
+    interface SlotConsumer {
+        void accept(Date time, String caregiver, boolean free);
+    }
+
+    // Call the consumer with every slot, free or not, by date and then caregiver
+    void forEachSlot(SlotConsumer consumer) {
+        for (Map.Entry<Long, ConcurrentSkipListMap<String, Slot>> day : slots.entrySet()) {
+            Date time = Date.valueOf(LocalDate.ofEpochDay(day.getKey()));
+            for (Map.Entry<String, Slot> slot : day.getValue().entrySet()) {
+                consumer.accept(time, slot.getKey(), slot.getValue().isFree());
+            }
+        }
+    }
+
+    // Add a slot as it was, e.g. from a snapshot, failing if the caregiver already has one on that date
+    void restore(Date time, String caregiver, boolean free) throws SQLException {
+        insert(time, caregiver);
+        if (!free) {
+            slots.get(toKey(time)).get(caregiver).claim();
+        }
+    }
+
+    boolean isEmpty() {
+        for (ConcurrentSkipListMap<String, Slot> day : slots.values()) {
+            if (!day.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean add(Date time, String caregiver) throws SQLException {
+        if (!caregivers.exists(caregiver)) {
+            throw new SQLException("No such caregiver: " + caregiver);
+        }
+        return slots.computeIfAbsent(toKey(time), k -> new ConcurrentSkipListMap<>())
+                .putIfAbsent(caregiver, new Slot(caregiver)) == null;
+    }
+
+    private static long toKey(Date d) {
+        return d.toLocalDate().toEpochDay();
+    }
+
+    // A caregiver's slot on one date: free, taken by an appointment, or withdrawn by cancel_day. A withdrawn slot
+    // never becomes free or taken again.
+    static class Slot {
+        private static final int FREE = 0;
+        private static final int TAKEN = 1;
+        private static final int WITHDRAWN = 2;
+
+        private final String caregiver;
+        private final AtomicInteger state = new AtomicInteger(FREE);
+
+        private Slot(String caregiver) {
+            this.caregiver = caregiver;
+        }
+
+        String getCaregiver() {
+            return caregiver;
+        }
+
+        boolean isFree() {
+            return state.get() == FREE;
+        }
+
+        boolean isWithdrawn() {
+            return state.get() == WITHDRAWN;
+        }
+
+        private boolean claim() {
+            return state.compareAndSet(FREE, TAKEN);
+        }
+
+        private void release() {
+            state.compareAndSet(TAKEN, FREE);
+        }
+
+        private void withdraw() {
+            state.set(WITHDRAWN);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package scheduler.storage.memory;
+
+import scheduler.model.Appointment;
+import scheduler.model.Credentials;
+import scheduler.model.Waiter;
+import scheduler.storage.SnapshotRepository;
+import scheduler.storage.Table;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+// Reads the rows straight out of the other repositories' maps and puts imported rows back into them as they were,
+// ids and taken slots included
+class MemorySnapshotRepository implements SnapshotRepository {
+
+    private final MemoryUserRepository patients;
+    private final MemoryUserRepository caregivers;
+    private final MemoryAvailabilityRepository availabilities;
+    private final MemoryVaccineRepository vaccines;
+    private final MemoryAppointmentRepository appointments;
+    private final MemoryWaitlistRepository waitlist;
+
+    MemorySnapshotRepository(MemoryUserRepository patients, MemoryUserRepository caregivers,
+                             MemoryAvailabilityRepository availabilities, MemoryVaccineRepository vaccines,
+                             MemoryAppointmentRepository appointments, MemoryWaitlistRepository waitlist) {
+        this.patients = patients;
+        this.caregivers = caregivers;
+        this.availabilities = availabilities;
+        this.vaccines = vaccines;
+        this.appointments = appointments;
+        this.waitlist = waitlist;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return patients.isEmpty() && caregivers.isEmpty() && availabilities.isEmpty() && vaccines.isEmpty()
+                && appointments.isEmpty() && waitlist.isEmpty();
+    }
+
+    @Override
+    public void forEachRow(Table table, Consumer<Object[]> consumer) {
+        switch (table) {
+            case CAREGIVERS:
+                caregivers.forEachUser((username, credentials) -> consumer.accept(toRow(username, credentials)));
+                break;
+            case PATIENTS:
+                patients.forEachUser((username, credentials) -> consumer.accept(toRow(username, credentials)));
+                break;
+            case VACCINES:
+                for (Map.Entry<String, Integer> vaccine : new TreeMap<>(vaccines.findAll()).entrySet()) {
+                    consumer.accept(new Object[]{vaccine.getKey(), vaccine.getValue()});
+                }
+                break;
+            case AVAILABILITIES:
+                availabilities.forEachSlot((time, caregiver, free) ->
+                        consumer.accept(new Object[]{time, caregiver, free ? 1 : 0}));
+                break;
+            case APPOINTMENTS:
+                appointments.forEachAppointment(appointment -> consumer.accept(new Object[]{
+                        appointment.getAppointmentId(), appointment.getTime(), appointment.getPatientName(),
+                        appointment.getCaregiverName(), appointment.getVaccineName()}));
+                break;
+            default:
+                waitlist.forEachWaiter(waiter -> consumer.accept(new Object[]{
+                        waiter.getWaiterId(), waiter.getTime(), waiter.getVaccineName(), waiter.getPatientName()}));
+                break;
+        }
+    }
+
+    @Override
+    public long insertRows(Table table, Iterator<Object[]> rows) throws SQLException {
+        long count = 0;
+        while (rows.hasNext()) {
+            Object[] row = rows.next();
+            switch (table) {
+                case CAREGIVERS:
+                    caregivers.insert((String) row[0], toCredentials(row));
+                    break;
+                case PATIENTS:
+                    patients.insert((String) row[0], toCredentials(row));
+                    break;
+                case VACCINES:
+                    vaccines.insert((String) row[0], (Integer) row[1]);
+                    break;
+                case AVAILABILITIES:
+                    availabilities.restore((Date) row[0], (String) row[1], (Integer) row[2] != 0);
+                    break;
+                case APPOINTMENTS:
+                    appointments.restore(new Appointment.AppointmentBuilder((Integer) row[0], (Date) row[1],
+                            (String) row[2], (String) row[3], (String) row[4]).build());
+                    break;
+                default:
+                    waitlist.restore(new Waiter.WaiterBuilder((Integer) row[0], (Date) row[1], (String) row[3],
+                            (String) row[2]).build());
+                    break;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private static Object[] toRow(String username, Credentials credentials) {
+        return new Object[]{username, credentials.getSalt(), credentials.getHash(),
+                credentials.getHashSpec().encode()};
+    }
+
+    private static Credentials toCredentials(Object[] row) {
+        return new Credentials((byte[]) row[1], (byte[]) row[2], HashSpec.parse((String) row[3]));
+    }
+}
@@ -0,0 +1,78 @@
+package scheduler.storage.memory;
+
+import scheduler.storage.AppointmentRepository;
+import scheduler.storage.AvailabilityRepository;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.SnapshotRepository;
+import scheduler.storage.Storage;
+import scheduler.storage.UserRepository;
+import scheduler.storage.VaccineRepository;
+import scheduler.storage.WaitlistRepository;
+
+// Everything held in concurrent maps in this process, for local runs, load tests and benchmarks without a
+// database. It keeps the same keys and foreign keys as create.sql, and nothing survives a restart.
+public class MemoryStorage implements Storage {
+
+    private final MemoryUserRepository patients = new MemoryUserRepository();
+    private final MemoryUserRepository caregivers = new MemoryUserRepository();
+    private final MemoryAvailabilityRepository availabilities = new MemoryAvailabilityRepository(caregivers);
+    private final MemoryVaccineRepository vaccines = new MemoryVaccineRepository();
+    private final MemoryAppointmentRepository appointments;
+    private final MemoryWaitlistRepository waitlist;
+    private final MemorySnapshotRepository snapshots;
+
+    public MemoryStorage() {
+        this(SlotSelection.fromEnv());
+    }
+
+    public MemoryStorage(SlotSelection selection) {
+        this.appointments = new MemoryAppointmentRepository(patients, availabilities, vaccines, selection);
+        this.waitlist = new MemoryWaitlistRepository(patients, availabilities, vaccines, appointments);
+        this.snapshots = new MemorySnapshotRepository(patients, caregivers, availabilities, vaccines, appointments,
+                waitlist);
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public UserRepository patients() {
+        return patients;
+    }
+
+    @Override
+    public UserRepository caregivers() {
+        return caregivers;
+    }
+
+    @Override
+    public AvailabilityRepository availabilities() {
+        return availabilities;
+    }
+
+    @Override
+    public VaccineRepository vaccines() {
+        return vaccines;
+    }
+
+    @Override
+    public AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    @Override
+    public WaitlistRepository waitlist() {
+        return waitlist;
+    }
+
+    @Override
+    public SnapshotRepository snapshots() {
+        return snapshots;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,66 @@
+package scheduler.storage.memory;
+
+import scheduler.model.Credentials;
+import scheduler.storage.UserRepository;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+class MemoryUserRepository implements UserRepository {
+
+    private final ConcurrentHashMap<String, Credentials> users = new ConcurrentHashMap<>();
+
+    @Override
+    public Credentials find(String username) {
+        return users.get(username);
+    }
+
+    @Override
+    public void insert(String username, Credentials credentials) throws SQLException {
+        if (users.putIfAbsent(username, credentials) != null) {
+            throw new SQLException("Duplicate username: " + username);
+        }
+    }
+
+    @Override
+    public boolean[] insertAll(List<String> usernames, List<Credentials> credentials) {
+        boolean[] inserted = new boolean[usernames.size()];
+        for (int i = 0; i < inserted.length; i++) {
+            inserted[i] = users.putIfAbsent(usernames.get(i), credentials.get(i)) == null;
+        }
+        return inserted;
+    }
+
+    @Override
+    public void updateCredentials(String username, Credentials credentials) {
+        users.replace(username, credentials);
+    }
+
+    @Override
+    public boolean[] exist(List<String> usernames) {
+        boolean[] exist = new boolean[usernames.size()];
+        for (int i = 0; i < exist.length; i++) {
+            exist[i] = users.containsKey(usernames.get(i));
+        }
+        return exist;
+    }
+
+    boolean exists(String username) {
+        return users.containsKey(username);
+    }
+
+    boolean isEmpty() {
+        return users.isEmpty();
+    }
+
+    // Call the consumer with every user, in username order
+    void forEachUser(BiConsumer<String, Credentials> consumer) {
+        for (Map.Entry<String, Credentials> user : new TreeMap<>(users).entrySet()) {
+            consumer.accept(user.getKey(), user.getValue());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package scheduler.storage.memory;
+
+import scheduler.storage.VaccineRepository;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+class MemoryVaccineRepository implements VaccineRepository {
+
+    private final ConcurrentHashMap<String, AtomicLong> doses = new ConcurrentHashMap<>();
+    // journal id -> last record applied
+    private final Map<String, Long> appliedSeqs = new HashMap<>();
+
+    @Override
+    public Map<String, Integer> findAll() {
+        Map<String, Integer> result = new HashMap<>();
+        doses.forEach((name, count) -> result.put(name, (int) count.get()));
+        return result;
+    }
+
+    @Override
+    public Integer findDoses(String name) {
+        AtomicLong count = doses.get(name);
+        return count == null ? null : (int) count.get();
+    }
+
+    @Override
+    public void insert(String name, int doses) throws SQLException {
+        if (this.doses.putIfAbsent(name, new AtomicLong(doses)) != null) {
+            throw new SQLException("Duplicate vaccine: " + name);
+        }
+    }
+
+    @Override
+    public boolean[] insertAll(Map<String, Integer> doses) {
+        boolean[] inserted = new boolean[doses.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> vaccine : doses.entrySet()) {
+            inserted[i++] = this.doses.putIfAbsent(vaccine.getKey(), new AtomicLong(vaccine.getValue())) == null;
+        }
+        return inserted;
+    }
+
+    @Override
+    public void addDoses(Map<String, Long> deltas) {
+        deltas.forEach((name, delta) -> {
+            AtomicLong count = doses.get(name);
+            if (count != null) {
+                count.addAndGet(delta);
+            }
+        });
+    }
+
+    @Override
+    public synchronized long findAppliedSeq(String journalId) {
+        return appliedSeqs.getOrDefault(journalId, 0L);
+    }
+
+    @Override
+    public synchronized boolean addDoses(Map<String, Long> deltas, String journalId, long afterSeq, long seq) {
+        if (appliedSeqs.getOrDefault(journalId, 0L) != afterSeq) {
+            return false;
+        }
+        addDoses(deltas);
+        appliedSeqs.put(journalId, seq);
+        return true;
+    }
+
+    boolean exists(String name) {
+        return doses.containsKey(name);
+    }
+
+    boolean isEmpty() {
+        return doses.isEmpty();
+    }
+}
@@ -0,0 +1,163 @@
+package scheduler.storage.memory;
+
+import scheduler.model.Appointment;
+import scheduler.model.Waiter;
+import scheduler.storage.WaitlistRepository;
+import scheduler.storage.memory.MemoryAvailabilityRepository.Slot;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+class MemoryWaitlistRepository implements WaitlistRepository {
+
+    private final MemoryUserRepository patients;
+    private final MemoryAvailabilityRepository availabilities;
+    private final MemoryVaccineRepository vaccines;
+    private final MemoryAppointmentRepository appointments;
+
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    // epoch day -> waiters for that day by id
+    private final ConcurrentSkipListMap<Long, ConcurrentSkipListMap<Integer, Waiter>> waiting =
+            new ConcurrentSkipListMap<>();
+    // "date vaccine patient" of everyone waiting, the table's unique key
+    private final Map<String, Boolean> keys = new ConcurrentHashMap<>();
+
+    MemoryWaitlistRepository(MemoryUserRepository patients, MemoryAvailabilityRepository availabilities,
+                             MemoryVaccineRepository vaccines, MemoryAppointmentRepository appointments) {
+        this.patients = patients;
+        this.availabilities = availabilities;
+        this.vaccines = vaccines;
+        this.appointments = appointments;
+    }
+
+    @Override
+    public int add(Date time, String vaccine, String patient) throws SQLException {
+        if (!patients.exists(patient)) {
+            throw new SQLException("No such patient: " + patient);
+        }
+        if (!vaccines.exists(vaccine)) {
+            throw new SQLException("No such vaccine: " + vaccine);
+        }
+        if (keys.putIfAbsent(key(time, vaccine, patient), Boolean.TRUE) != null) {
+            return 0;
+        }
+        ConcurrentSkipListMap<Integer, Waiter> day = waiting.computeIfAbsent(toKey(time),
+                k -> new ConcurrentSkipListMap<>());
+        Waiter waiter = new Waiter.WaiterBuilder(nextId.getAndIncrement(), time, patient, vaccine).build();
+        day.put(waiter.getWaiterId(), waiter);
+        int position = 0;
+        for (Waiter w : day.headMap(waiter.getWaiterId(), true).values()) {
+            if (w.getVaccineName().equals(vaccine)) {
+                position++;
+            }
+        }
+        return position;
+    }
+
+    @Override
+    public List<Waiter> findWaiting(Date time, int afterId, int limit) {
+        List<Waiter> waiters = new ArrayList<>();
+        ConcurrentSkipListMap<Integer, Waiter> day = waiting.get(toKey(time));
+        if (day != null) {
+            for (Waiter waiter : day.tailMap(afterId, false).values()) {
+                if (waiters.size() == limit) {
+                    break;
+                }
+                waiters.add(waiter);
+            }
+        }
+        return waiters;
+    }
+
+    @Override
+    public SortedSet<Date> findDates(String vaccine) {
+        SortedSet<Date> dates = new TreeSet<>();
+        for (Map.Entry<Long, ConcurrentSkipListMap<Integer, Waiter>> day : waiting.entrySet()) {
+            for (Waiter waiter : day.getValue().values()) {
+                if (vaccine == null || waiter.getVaccineName().equals(vaccine)) {
+                    dates.add(Date.valueOf(LocalDate.ofEpochDay(day.getKey())));
+                    break;
+                }
+            }
+        }
+        return dates;
+    }
+
+    // Serialized, as the SQL Server version is by its locks
+    @Override
+    public synchronized List<Appointment> allocate(Date time, List<Waiter> waiters) {
+        List<Appointment> booked = new ArrayList<>();
+        ConcurrentSkipListMap<Integer, Waiter> day = waiting.get(toKey(time));
+        if (day == null) {
+            return booked;
+        }
+        for (Waiter waiter : waiters) {
+            if (!day.containsKey(waiter.getWaiterId())) {
+                continue;
+            }
+            Appointment appointment = null;
+            while (appointment == null) {
+                Slot slot = availabilities.claimFirst(time);
+                if (slot == null) {
+                    return booked;
+                }
+                // null if cancel_day withdrew the slot while booking it
+                appointment = appointments.book(time, waiter.getPatientName(), slot, waiter.getVaccineName());
+            }
+            day.remove(waiter.getWaiterId());
+            keys.remove(key(time, waiter.getVaccineName(), waiter.getPatientName()));
+            booked.add(appointment);
+        }
+        return booked;
+    }
+
+    // Put a waiter back as they were, id included, e.g. from a snapshot
+    void restore(Waiter waiter) throws SQLException {
+        if (!patients.exists(waiter.getPatientName())) {
+            throw new SQLException("No such patient: " + waiter.getPatientName());
+        }
+        if (!vaccines.exists(waiter.getVaccineName())) {
+            throw new SQLException("No such vaccine: " + waiter.getVaccineName());
+        }
+        if (keys.putIfAbsent(key(waiter.getTime(), waiter.getVaccineName(), waiter.getPatientName()),
+                Boolean.TRUE) != null) {
+            throw new SQLException("Already waiting: " + waiter.getPatientName());
+        }
+        nextId.accumulateAndGet(waiter.getWaiterId() + 1, Math::max);
+        waiting.computeIfAbsent(toKey(waiter.getTime()), k -> new ConcurrentSkipListMap<>())
+                .put(waiter.getWaiterId(), waiter);
+    }
+
+    // Call the consumer with every waiter, in id order
+    void forEachWaiter(Consumer<Waiter> consumer) {
+        SortedMap<Integer, Waiter> byId = new TreeMap<>();
+        for (ConcurrentSkipListMap<Integer, Waiter> day : waiting.values()) {
+            byId.putAll(day);
+        }
+        byId.values().forEach(consumer);
+    }
+
+    boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    private static String key(Date time, String vaccine, String patient) {
+        return time + " " + vaccine + " " + patient;
+    }
+
+    private static long toKey(Date d) {
+        return d.toLocalDate().toEpochDay();
+    }
+}
@@ -0,0 +1,41 @@
+package scheduler.storage.sqlserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits keys into chunks for "IN (?, ...)" queries. Every distinct statement text takes an entry in the
+// connection's StatementCache and a plan on the server, so a chunk is padded to the next power of two (at least
+// MIN_SIZE) by repeating its last key, and a lookup of any number of keys uses one of a handful of texts.
+final class InList {
+
+    // keys per query, well under SQL Server's limit of 2100 parameters
+    static final int MAX_SIZE = 1024;
+    private static final int MIN_SIZE = 16;
+
+    private InList() {
+    }
+
+    // The keys in chunks of up to MAX_SIZE, each padded to its statement's size
+    static List<List<String>> chunks(List<String> keys) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int start = 0; start < keys.size(); start += MAX_SIZE) {
+            List<String> chunk = new ArrayList<>(keys.subList(start, Math.min(start + MAX_SIZE, keys.size())));
+            int size = Math.max(MIN_SIZE, Integer.highestOneBit(chunk.size() - 1) << 1);
+            String last = chunk.get(chunk.size() - 1);
+            while (chunk.size() < size) {
+                chunk.add(last);
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    // "(?, ?, ...)" with a placeholder per key of the chunk
+    static String placeholders(List<String> chunk) {
+        StringBuilder list = new StringBuilder("(");
+        for (int i = 0; i < chunk.size(); i++) {
+            list.append(i == 0 ? "?" : ", ?");
+        }
+        return list.append(")").toString();
+    }
+}
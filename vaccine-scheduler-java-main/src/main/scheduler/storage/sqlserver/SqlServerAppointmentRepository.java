@@ -0,0 +1,371 @@
+package scheduler.storage.sqlserver;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Appointment;
+import scheduler.storage.AppointmentQuery;
+import scheduler.storage.AppointmentRepository;
+import scheduler.storage.SlotSelection;
+import scheduler.util.Util;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+class SqlServerAppointmentRepository implements AppointmentRepository {
+    // result codes returned by the reserve batch
+    private static final int RESERVED = 0;
+    private static final int NO_CAREGIVER = 1;
+    // most appointment rows fetched from the server per round trip
+    private static final int FETCH_SIZE = 100;
+    // most statements bookAll sends in a single executeBatch()
+    private static final int BATCH_SIZE = 1000;
+    // the end of the range reserveEarliest searches when it is given none
+    private static final Date LAST_DATE = Date.valueOf("9999-12-31");
+
+    // Claims a free caregiver on the earliest date from @from to @to that has one and inserts the appointment in a
+    // single transaction and a single round trip; reserve passes the same date twice. The range is a seek on
+    // IX_Availabilities_Available. UPDLOCK keeps two reservations from claiming the same slot, and the appointment
+    // id comes from the IDENTITY column instead of counting the table. Which caregiver is claimed on the date
+    // depends on the SlotSelection.
+    private static String reserveBatch(SlotSelection selection) {
+        return "SET NOCOUNT ON; " +
+                "SET XACT_ABORT ON; " +
+                "DECLARE @from date = ?, @to date = ?, @patient varchar(255) = ?, @vaccine varchar(255) = ?, " +
+                "    @after varchar(255) = ?; " +
+                "DECLARE @time date = NULL, @caregiver varchar(255) = NULL, @id int = NULL, " +
+                "    @status int = " + RESERVED + "; " +
+                "BEGIN TRANSACTION; " +
+                "WITH slot AS (SELECT TOP (1) a.Time, a.Username, a.Available FROM Availabilities AS a " +
+                "    WITH (" + hints(selection) + ") " +
+                "    WHERE a.Available = 1 AND a.Time BETWEEN @from AND @to " +
+                "    ORDER BY a.Time, " + order(selection) + ") " +
+                "UPDATE slot SET @time = Time, @caregiver = Username, Available = 0; " +
+                "IF @caregiver IS NULL " +
+                "    SET @status = " + NO_CAREGIVER + "; " +
+                "ELSE " +
+                "BEGIN " +
+                "    INSERT INTO Appointments (Time, P_Username, C_Username, V_Name) " +
+                "        VALUES (@time, @patient, @caregiver, @vaccine); " +
+                "    SET @id = SCOPE_IDENTITY(); " +
+                "END " +
+                "IF @status = " + RESERVED + " COMMIT TRANSACTION; ELSE ROLLBACK TRANSACTION; " +
+                "SELECT @status status, @id id, @time time, @caregiver caregiver;";
+    }
+
+    private static String hints(SlotSelection selection) {
+        // READPAST skips rows other reservations have locked instead of waiting for them
+        return selection == SlotSelection.FIRST ? "UPDLOCK, ROWLOCK" : "UPDLOCK, ROWLOCK, READPAST";
+    }
+
+    private static String order(SlotSelection selection) {
+        switch (selection) {
+            case ROUND_ROBIN:
+                // usernames after the last one picked come first; with no last one every name sorts the same
+                return "CASE WHEN a.Username > @after THEN 0 ELSE 1 END, a.Username";
+            case RANDOM:
+                return "NEWID()";
+            case LEAST_LOADED:
+                // a seek per free caregiver on IX_Appointments_Caregiver
+                return "(SELECT COUNT(*) FROM Appointments AS p WHERE p.C_Username = a.Username), a.Username";
+            default:
+                return "a.Username";
+        }
+    }
+
+    // Deletes the appointment, frees its slot and adds its dose back in one transaction and one round trip. The
+    // DELETE's OUTPUT tells the other statements what was cancelled, so an id that isn't the user's changes nothing.
+    private static final String CANCEL =
+            "SET NOCOUNT ON; " +
+            "SET XACT_ABORT ON; " +
+            "DECLARE @id int = ?, @patient varchar(255) = ?, @caregiver varchar(255) = ?; " +
+            "DECLARE @cancelled TABLE (Time date, P_Username varchar(255), C_Username varchar(255), " +
+            "    V_Name varchar(255)); " +
+            "BEGIN TRANSACTION; " +
+            "DELETE FROM Appointments " +
+            "    OUTPUT DELETED.Time, DELETED.P_Username, DELETED.C_Username, DELETED.V_Name INTO @cancelled " +
+            "    WHERE Appointment_id = @id AND (P_Username = @patient OR C_Username = @caregiver); " +
+            "UPDATE a SET Available = 1 FROM Availabilities AS a " +
+            "    JOIN @cancelled AS c ON a.Time = c.Time AND a.Username = c.C_Username; " +
+            "UPDATE v SET Doses = Doses + 1 FROM Vaccines AS v JOIN @cancelled AS c ON v.Name = c.V_Name; " +
+            "COMMIT TRANSACTION; " +
+            "SELECT Time, P_Username, C_Username, V_Name FROM @cancelled;";
+
+    // The same for every appointment of a caregiver in a date range, set-based: one DELETE however many
+    // appointments there are, one UPDATE per vaccine, and the caregiver's slots in the range are removed. The slots
+    // are withdrawn (Available = -1) first: that waits for a reservation that is claiming one of them to commit,
+    // so its appointment is deleted below, and keeps any other from claiming them, so no appointment is inserted
+    // after the DELETE that would make removing its slot break the foreign key. Only the withdrawn slots are
+    // removed, not ones uploaded in between.
+    private static final String CANCEL_ALL =
+            "SET NOCOUNT ON; " +
+            "SET XACT_ABORT ON; " +
+            "DECLARE @caregiver varchar(255) = ?, @from date = ?, @to date = ?; " +
+            "DECLARE @cancelled TABLE (Appointment_id int, Time date, P_Username varchar(255), " +
+            "    V_Name varchar(255)); " +
+            "BEGIN TRANSACTION; " +
+            "UPDATE Availabilities SET Available = -1 WHERE Username = @caregiver AND Time BETWEEN @from AND @to; " +
+            "DELETE FROM Appointments " +
+            "    OUTPUT DELETED.Appointment_id, DELETED.Time, DELETED.P_Username, DELETED.V_Name INTO @cancelled " +
+            "    WHERE C_Username = @caregiver AND Time BETWEEN @from AND @to; " +
+            "UPDATE v SET Doses = v.Doses + c.Doses FROM Vaccines AS v " +
+            "    JOIN (SELECT V_Name, COUNT(*) AS Doses FROM @cancelled GROUP BY V_Name) AS c ON v.Name = c.V_Name; " +
+            "DELETE FROM Availabilities " +
+            "    WHERE Username = @caregiver AND Time BETWEEN @from AND @to AND Available = -1; " +
+            "COMMIT TRANSACTION; " +
+            "SELECT Appointment_id, Time, P_Username, V_Name FROM @cancelled ORDER BY Appointment_id;";
+
+    private final String reserve;
+    // the caregiver ROUND_ROBIN picked last in this process
+    private final AtomicReference<String> lastCaregiver = new AtomicReference<>();
+
+    SqlServerAppointmentRepository(SlotSelection selection) {
+        this.reserve = reserveBatch(selection);
+    }
+
+    @Override
+    public Appointment reserve(Date time, String patient, String vaccine) throws SQLException {
+        return reserveEarliest(time, time, patient, vaccine);
+    }
+
+    @Override
+    public Appointment reserveEarliest(Date from, Date to, String patient, String vaccine) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            PreparedStatement statement = cm.prepare(reserve);
+            statement.setDate(1, from);
+            statement.setDate(2, to == null ? LAST_DATE : to);
+            statement.setString(3, patient);
+            statement.setString(4, vaccine);
+            statement.setString(5, lastCaregiver.get());
+            try (ResultSet resultSet = firstResultSet(statement)) {
+                resultSet.next();
+                if (resultSet.getInt("status") == NO_CAREGIVER) {
+                    return null;
+                }
+                String caregiver = resultSet.getString("caregiver");
+                lastCaregiver.set(caregiver);
+                return new Appointment.AppointmentBuilder(resultSet.getInt("id"), resultSet.getDate("time"), patient,
+                        caregiver, vaccine).build();
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Two JDBC batches in one transaction: claim every slot that is still free, then insert the appointments of
+    // the claimed ones
+    @Override
+    public boolean[] bookAll(List<Appointment> planned) throws SQLException {
+        boolean[] booked = new boolean[planned.size()];
+        if (planned.isEmpty()) {
+            return booked;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String claimSlot = "UPDATE Availabilities SET Available = 0 WHERE Time = ? AND Username = ? AND Available = 1";
+        String addAppointment = "INSERT INTO Appointments (Time, P_Username, C_Username, V_Name) VALUES (?, ?, ?, ?)";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement claim = cm.prepare(claimSlot);
+            for (int start = 0; start < booked.length; start += BATCH_SIZE) {
+                int end = Math.min(start + BATCH_SIZE, booked.length);
+                for (Appointment appointment : planned.subList(start, end)) {
+                    claim.setDate(1, appointment.getTime());
+                    claim.setString(2, appointment.getCaregiverName());
+                    claim.addBatch();
+                }
+                System.arraycopy(Util.toInserted(claim.executeBatch()), 0, booked, start, end - start);
+            }
+            PreparedStatement add = cm.prepare(addAppointment);
+            int pending = 0;
+            for (int i = 0; i < booked.length; i++) {
+                if (!booked[i]) {
+                    continue;
+                }
+                Appointment appointment = planned.get(i);
+                add.setDate(1, appointment.getTime());
+                add.setString(2, appointment.getPatientName());
+                add.setString(3, appointment.getCaregiverName());
+                add.setString(4, appointment.getVaccineName());
+                add.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    add.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                add.executeBatch();
+            }
+            con.commit();
+            return booked;
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Appointment cancel(int appointmentId, String patient, String caregiver) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            PreparedStatement statement = cm.prepare(CANCEL);
+            statement.setInt(1, appointmentId);
+            statement.setString(2, patient);
+            statement.setString(3, caregiver);
+            try (ResultSet resultSet = firstResultSet(statement)) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                return new Appointment.AppointmentBuilder(appointmentId, resultSet.getDate("Time"),
+                        resultSet.getString("P_Username"), resultSet.getString("C_Username"),
+                        resultSet.getString("V_Name")).build();
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public List<Appointment> cancelAll(String caregiver, Date from, Date to) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            PreparedStatement statement = cm.prepare(CANCEL_ALL);
+            statement.setString(1, caregiver);
+            statement.setDate(2, from);
+            statement.setDate(3, to);
+            try (ResultSet resultSet = firstResultSet(statement)) {
+                List<Appointment> cancelled = new ArrayList<>();
+                while (resultSet.next()) {
+                    cancelled.add(new Appointment.AppointmentBuilder(resultSet.getInt("Appointment_id"),
+                            resultSet.getDate("Time"), resultSet.getString("P_Username"), caregiver,
+                            resultSet.getString("V_Name")).build());
+                }
+                return cancelled;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public int forEachOfCaregiver(String caregiver, AppointmentQuery query, Consumer<Appointment> consumer)
+            throws SQLException {
+        return forEach("C_Username", caregiver, query, consumer);
+    }
+
+    @Override
+    public int forEachOfPatient(String patient, AppointmentQuery query, Consumer<Appointment> consumer)
+            throws SQLException {
+        return forEach("P_Username", patient, query, consumer);
+    }
+
+    // One query per InList chunk of patients, each a seek per patient on IX_Appointments_Patient
+    @Override
+    public void forEachOfPatients(List<String> patients, Date from, Date to, BiConsumer<String, Date> consumer)
+            throws SQLException {
+        if (patients.isEmpty()) {
+            return;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            for (List<String> chunk : InList.chunks(patients)) {
+                String getAppointments = "SELECT P_Username, Time FROM Appointments " +
+                        "WHERE P_Username IN " + InList.placeholders(chunk) + " AND Time BETWEEN ? AND ?";
+                PreparedStatement statement = cm.prepare(getAppointments);
+                int i = 1;
+                for (String patient : chunk) {
+                    statement.setString(i++, patient);
+                }
+                statement.setDate(i++, from);
+                statement.setDate(i, to);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(resultSet.getString("P_Username"), resultSet.getDate("Time"));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Seeks the (user, Appointment_id) index past afterId and streams rows to the consumer as they arrive, so
+    // neither the page nor the user's history is ever held in memory
+    private int forEach(String column, String username, AppointmentQuery query, Consumer<Appointment> consumer)
+            throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        StringBuilder getAppointments = new StringBuilder("SELECT TOP (?) Appointment_id, Time, P_Username, " +
+                "C_Username, V_Name FROM Appointments WHERE " + column + " = ? AND Appointment_id > ?");
+        // only the bounds that are given, so each combination gets its own plan
+        if (query.getFrom() != null) {
+            getAppointments.append(" AND Time >= ?");
+        }
+        if (query.getTo() != null) {
+            getAppointments.append(" AND Time <= ?");
+        }
+        getAppointments.append(" ORDER BY Appointment_id");
+        try {
+            PreparedStatement statement = cm.prepare(getAppointments.toString());
+            statement.setFetchSize(Math.min(query.getLimit(), FETCH_SIZE));
+            int i = 1;
+            statement.setInt(i++, query.getLimit());
+            statement.setString(i++, username);
+            statement.setInt(i++, query.getAfterId());
+            if (query.getFrom() != null) {
+                statement.setDate(i++, query.getFrom());
+            }
+            if (query.getTo() != null) {
+                statement.setDate(i, query.getTo());
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                int count = 0;
+                while (resultSet.next()) {
+                    consumer.accept(new Appointment.AppointmentBuilder(resultSet.getInt("Appointment_id"),
+                            resultSet.getDate("Time"), resultSet.getString("P_Username"),
+                            resultSet.getString("C_Username"), resultSet.getString("V_Name")).build());
+                    count++;
+                }
+                return count;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Skip any update counts the batch produces and return the result of its final SELECT
+    static ResultSet firstResultSet(PreparedStatement statement) throws SQLException {
+        boolean isResultSet = statement.execute();
+        while (!isResultSet) {
+            if (statement.getUpdateCount() == -1) {
+                throw new SQLException("Statement returned no result set");
+            }
+            isResultSet = statement.getMoreResults();
+        }
+        return statement.getResultSet();
+    }
+}
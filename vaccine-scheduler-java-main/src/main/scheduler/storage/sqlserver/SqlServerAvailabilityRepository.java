@@ -0,0 +1,124 @@
+package scheduler.storage.sqlserver;
+
+import scheduler.db.ConnectionManager;
+import scheduler.storage.AvailabilityRepository;
+
+import java.sql.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+class SqlServerAvailabilityRepository implements AvailabilityRepository {
+
+    @Override
+    public void insert(Date time, String caregiver) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String addAvailability = "INSERT INTO Availabilities VALUES (? , ?, ?)";
+        try {
+            PreparedStatement statement = cm.prepare(addAvailability);
+            statement.setDate(1, time);
+            statement.setString(2, caregiver);
+            statement.setInt(3, 1);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // A single multi-row insert and a single round trip
+    @Override
+    public boolean[] insertAll(String caregiver, List<Date> dates) throws SQLException {
+        boolean[] inserted = new boolean[dates.size()];
+        if (dates.isEmpty()) {
+            return inserted;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        // the dates travel as one comma-separated parameter so the insert is one statement and one round trip
+        String addAvailability = "INSERT INTO Availabilities (Time, Username, Available) " +
+                "OUTPUT INSERTED.Time " +
+                "SELECT DISTINCT CAST(s.value AS date), ?, 1 FROM STRING_SPLIT(?, ',') AS s " +
+                "WHERE NOT EXISTS (SELECT 1 FROM Availabilities AS a WITH (UPDLOCK) " +
+                "    WHERE a.Time = CAST(s.value AS date) AND a.Username = ?)";
+        StringBuilder dateList = new StringBuilder(dates.size() * 11);
+        for (Date d : dates) {
+            if (dateList.length() > 0) {
+                dateList.append(',');
+            }
+            dateList.append(d.toString());
+        }
+        try {
+            PreparedStatement statement = cm.prepare(addAvailability);
+            statement.setString(1, caregiver);
+            statement.setString(2, dateList.toString());
+            statement.setString(3, caregiver);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Set<Date> added = new HashSet<>();
+                while (resultSet.next()) {
+                    added.add(resultSet.getDate("Time"));
+                }
+                for (int i = 0; i < inserted.length; i++) {
+                    // only the first occurrence of a repeated date counts as added
+                    inserted[i] = added.remove(dates.get(i));
+                }
+                return inserted;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEachFree(BiConsumer<Date, String> consumer) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getSlots = "SELECT Time, Username FROM Availabilities WHERE Available = 1";
+        try {
+            PreparedStatement statement = cm.prepare(getSlots);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getDate("Time"), resultSet.getString("Username"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // A seek on the primary key's date range
+    @Override
+    public void forEachFreeOf(String caregiver, Date from, Date to, Consumer<Date> consumer) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getSlots = "SELECT Time FROM Availabilities " +
+                "WHERE Time BETWEEN ? AND ? AND Username = ? AND Available = 1 ORDER BY Time";
+        try {
+            PreparedStatement statement = cm.prepare(getSlots);
+            statement.setDate(1, from);
+            statement.setDate(2, to);
+            statement.setString(3, caregiver);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(resultSet.getDate("Time"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package scheduler.storage.sqlserver;
+
+import com.microsoft.sqlserver.jdbc.ISQLServerBulkData;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopy;
+import com.microsoft.sqlserver.jdbc.SQLServerBulkCopyOptions;
+import scheduler.db.ConnectionManager;
+import scheduler.storage.SnapshotRepository;
+import scheduler.storage.Table;
+
+import java.sql.*;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Export is one streaming SELECT per table; import goes through the driver's bulk copy, which sends the rows in
+// the bulk load format rather than as one INSERT each
+class SqlServerSnapshotRepository implements SnapshotRepository {
+
+    // rows fetched per round trip when exporting
+    private static final int FETCH_SIZE = 10000;
+    // rows per bulk copy batch when importing
+    private static final int BULK_BATCH_SIZE = 10000;
+
+    @Override
+    public boolean isEmpty() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        StringBuilder anyRows = new StringBuilder("SELECT CASE WHEN ");
+        for (Table table : Table.values()) {
+            if (table.ordinal() > 0) {
+                anyRows.append(" OR ");
+            }
+            anyRows.append("EXISTS (SELECT 1 FROM ").append(table.getSqlName()).append(")");
+        }
+        anyRows.append(" THEN 0 ELSE 1 END");
+        try {
+            PreparedStatement statement = cm.prepare(anyRows.toString());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getInt(1) == 1;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void forEachRow(Table table, Consumer<Object[]> consumer) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        List<Table.Column> columns = table.getColumns();
+        String getRows = "SELECT " + columnList(table) + " FROM " + table.getSqlName() +
+                " ORDER BY " + table.getPrimaryKey();
+        try {
+            PreparedStatement statement = cm.prepare(getRows);
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Object[] row = new Object[columns.size()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = read(resultSet, i + 1, columns.get(i).getType());
+                    }
+                    consumer.accept(row);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // Identity values are kept and constraints checked; each batch commits on its own, so a failed import leaves
+    // the batches before the failure in place
+    @Override
+    public long insertRows(Table table, Iterator<Object[]> rows) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        BulkRows data = new BulkRows(table, rows);
+        SQLServerBulkCopy bulkCopy = null;
+        try {
+            bulkCopy = new SQLServerBulkCopy(con);
+            SQLServerBulkCopyOptions options = new SQLServerBulkCopyOptions();
+            options.setKeepIdentity(true);
+            options.setKeepNulls(true);
+            options.setTableLock(true);
+            options.setCheckConstraints(true);
+            options.setBatchSize(BULK_BATCH_SIZE);
+            options.setBulkCopyTimeout(0);
+            bulkCopy.setBulkCopyOptions(options);
+            bulkCopy.setDestinationTableName(table.getSqlName());
+            for (Table.Column column : table.getColumns()) {
+                bulkCopy.addColumnMapping(column.getName(), column.getName());
+            }
+            bulkCopy.writeToServer(data);
+            return data.count;
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            if (bulkCopy != null) {
+                bulkCopy.close();
+            }
+            cm.closeConnection();
+        }
+    }
+
+    private static String columnList(Table table) {
+        StringBuilder list = new StringBuilder();
+        for (Table.Column column : table.getColumns()) {
+            if (list.length() > 0) {
+                list.append(", ");
+            }
+            list.append(column.getName());
+        }
+        return list.toString();
+    }
+
+    private static Object read(ResultSet resultSet, int index, Table.Type type) throws SQLException {
+        switch (type) {
+            case STRING:
+                return resultSet.getString(index);
+            case BINARY:
+                return resultSet.getBytes(index);
+            case DATE:
+                return resultSet.getDate(index);
+            default:
+                int value = resultSet.getInt(index);
+                return resultSet.wasNull() ? null : value;
+        }
+    }
+
+    // The rows of a snapshot table as a bulk copy source, read from the iterator one at a time
+    private static class BulkRows implements ISQLServerBulkData {
+        private static final long serialVersionUID = 1L;
+
+        private final transient List<Table.Column> columns;
+        private final transient Iterator<Object[]> rows;
+        private transient Object[] current = null;
+        private long count = 0;
+
+        private BulkRows(Table table, Iterator<Object[]> rows) {
+            this.columns = table.getColumns();
+            this.rows = rows;
+        }
+
+        @Override
+        public Set<Integer> getColumnOrdinals() {
+            Set<Integer> ordinals = new LinkedHashSet<>();
+            for (int i = 1; i <= columns.size(); i++) {
+                ordinals.add(i);
+            }
+            return ordinals;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columns.get(column - 1).getName();
+        }
+
+        @Override
+        public int getColumnType(int column) {
+            switch (columns.get(column - 1).getType()) {
+                case STRING:
+                    return Types.VARCHAR;
+                case BINARY:
+                    return Types.VARBINARY;
+                case DATE:
+                    return Types.DATE;
+                default:
+                    return Types.INTEGER;
+            }
+        }
+
+        @Override
+        public int getPrecision(int column) {
+            switch (columns.get(column - 1).getType()) {
+                case STRING:
+                    return 255;
+                case BINARY:
+                    return 8000;
+                default:
+                    return 10;
+            }
+        }
+
+        @Override
+        public int getScale(int column) {
+            return 0;
+        }
+
+        @Override
+        public Object[] getRowData() {
+            return current;
+        }
+
+        @Override
+        public boolean next() {
+            if (!rows.hasNext()) {
+                return false;
+            }
+            current = rows.next();
+            count++;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package scheduler.storage.sqlserver;
+
+import scheduler.db.ConnectionManager;
+import scheduler.storage.AppointmentRepository;
+import scheduler.storage.AvailabilityRepository;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.SnapshotRepository;
+import scheduler.storage.Storage;
+import scheduler.storage.UserRepository;
+import scheduler.storage.VaccineRepository;
+import scheduler.storage.WaitlistRepository;
+
+// The tables of create.sql on SQL Server / Azure SQL, reached through the ConnectionManager's pool
+public class SqlServerStorage implements Storage {
+
+    private final UserRepository patients = new SqlServerUserRepository("Patients");
+    private final UserRepository caregivers = new SqlServerUserRepository("Caregivers");
+    private final AvailabilityRepository availabilities = new SqlServerAvailabilityRepository();
+    private final VaccineRepository vaccines = new SqlServerVaccineRepository();
+    private final AppointmentRepository appointments;
+    private final WaitlistRepository waitlist = new SqlServerWaitlistRepository();
+    private final SnapshotRepository snapshots = new SqlServerSnapshotRepository();
+
+    public SqlServerStorage() {
+        this(SlotSelection.fromEnv());
+    }
+
+    public SqlServerStorage(SlotSelection selection) {
+        this.appointments = new SqlServerAppointmentRepository(selection);
+    }
+
+    @Override
+    public String getName() {
+        return "sqlserver";
+    }
+
+    @Override
+    public UserRepository patients() {
+        return patients;
+    }
+
+    @Override
+    public UserRepository caregivers() {
+        return caregivers;
+    }
+
+    @Override
+    public AvailabilityRepository availabilities() {
+        return availabilities;
+    }
+
+    @Override
+    public VaccineRepository vaccines() {
+        return vaccines;
+    }
+
+    @Override
+    public AppointmentRepository appointments() {
+        return appointments;
+    }
+
+    @Override
+    public WaitlistRepository waitlist() {
+        return waitlist;
+    }
+
+    @Override
+    public SnapshotRepository snapshots() {
+        return snapshots;
+    }
+
+    @Override
+    public void close() {
+        ConnectionManager.shutdown();
+    }
+}
@@ -0,0 +1,149 @@
+package scheduler.storage.sqlserver;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Credentials;
+import scheduler.storage.UserRepository;
+import scheduler.util.PasswordHasher.HashSpec;
+import scheduler.util.Util;
+
+import java.sql.*;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Patients and Caregivers have the same columns, so one class serves both
+class SqlServerUserRepository implements UserRepository {
+
+    private final String table;
+
+    SqlServerUserRepository(String table) {
+        this.table = table;
+    }
+
+    @Override
+    public Credentials find(String username) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getUser = "SELECT Salt, Hash, HashSpec FROM " + table + " WHERE Username = ?";
+        try {
+            PreparedStatement statement = cm.prepare(getUser);
+            statement.setString(1, username);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    return new Credentials(resultSet.getBytes("Salt"), resultSet.getBytes("Hash"),
+                            HashSpec.parse(resultSet.getString("HashSpec")));
+                }
+                return null;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void insert(String username, Credentials credentials) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String addUser = "INSERT INTO " + table + " (Username, Salt, Hash, HashSpec) VALUES (?, ?, ?, ?)";
+        try {
+            PreparedStatement statement = cm.prepare(addUser);
+            statement.setString(1, username);
+            statement.setBytes(2, credentials.getSalt());
+            statement.setBytes(3, credentials.getHash());
+            statement.setString(4, credentials.getHashSpec().encode());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // One JDBC batch in one transaction
+    @Override
+    public boolean[] insertAll(List<String> usernames, List<Credentials> credentials) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addUser = "INSERT INTO " + table + " (Username, Salt, Hash, HashSpec) SELECT ?, ?, ?, ? " +
+                "WHERE NOT EXISTS (SELECT 1 FROM " + table + " WITH (UPDLOCK) WHERE Username = ?)";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepare(addUser);
+            for (int i = 0; i < usernames.size(); i++) {
+                statement.setString(1, usernames.get(i));
+                statement.setBytes(2, credentials.get(i).getSalt());
+                statement.setBytes(3, credentials.get(i).getHash());
+                statement.setString(4, credentials.get(i).getHashSpec().encode());
+                statement.setString(5, usernames.get(i));
+                statement.addBatch();
+            }
+            boolean[] inserted = Util.toInserted(statement.executeBatch());
+            con.commit();
+            return inserted;
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void updateCredentials(String username, Credentials credentials) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String rehash = "UPDATE " + table + " SET Salt = ?, Hash = ?, HashSpec = ? WHERE Username = ?";
+        try {
+            PreparedStatement statement = cm.prepare(rehash);
+            statement.setBytes(1, credentials.getSalt());
+            statement.setBytes(2, credentials.getHash());
+            statement.setString(3, credentials.getHashSpec().encode());
+            statement.setString(4, username);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // One "Username IN (...)" query per InList chunk of names
+    @Override
+    public boolean[] exist(List<String> usernames) throws SQLException {
+        boolean[] exist = new boolean[usernames.size()];
+        if (usernames.isEmpty()) {
+            return exist;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            Set<String> found = new HashSet<>();
+            for (List<String> chunk : InList.chunks(usernames)) {
+                String getUsers = "SELECT Username FROM " + table + " WHERE Username IN " + InList.placeholders(chunk);
+                PreparedStatement statement = cm.prepare(getUsers);
+                for (int i = 0; i < chunk.size(); i++) {
+                    statement.setString(i + 1, chunk.get(i));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        found.add(resultSet.getString("Username"));
+                    }
+                }
+            }
+            for (int i = 0; i < exist.length; i++) {
+                exist[i] = found.contains(usernames.get(i));
+            }
+            return exist;
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
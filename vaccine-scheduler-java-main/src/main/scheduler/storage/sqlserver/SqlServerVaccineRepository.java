@@ -0,0 +1,189 @@
+package scheduler.storage.sqlserver;
+
+import scheduler.db.ConnectionManager;
+import scheduler.storage.VaccineRepository;
+import scheduler.util.Util;
+
+import java.sql.*;
+import java.util.HashMap;
+import java.util.Map;
+
+class SqlServerVaccineRepository implements VaccineRepository {
+
+    @Override
+    public Map<String, Integer> findAll() throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getVaccines = "SELECT Name, Doses FROM Vaccines";
+        try {
+            PreparedStatement statement = cm.prepare(getVaccines);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Map<String, Integer> doses = new HashMap<>();
+                while (resultSet.next()) {
+                    doses.put(resultSet.getString("Name"), resultSet.getInt("Doses"));
+                }
+                return doses;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public Integer findDoses(String name) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getVaccine = "SELECT Doses FROM Vaccines WHERE Name = ?";
+        try {
+            PreparedStatement statement = cm.prepare(getVaccine);
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getInt("Doses") : null;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public void insert(String name, int doses) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String addDoses = "INSERT INTO vaccines VALUES (?, ?)";
+        try {
+            PreparedStatement statement = cm.prepare(addDoses);
+            statement.setString(1, name);
+            statement.setInt(2, doses);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // One JDBC batch in one transaction
+    @Override
+    public boolean[] insertAll(Map<String, Integer> doses) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addVaccine = "INSERT INTO Vaccines SELECT ?, ? " +
+                "WHERE NOT EXISTS (SELECT 1 FROM Vaccines WITH (UPDLOCK) WHERE Name = ?)";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepare(addVaccine);
+            for (Map.Entry<String, Integer> vaccine : doses.entrySet()) {
+                statement.setString(1, vaccine.getKey());
+                statement.setInt(2, vaccine.getValue());
+                statement.setString(3, vaccine.getKey());
+                statement.addBatch();
+            }
+            boolean[] inserted = Util.toInserted(statement.executeBatch());
+            con.commit();
+            return inserted;
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // One "Doses = Doses + ?" batch in one transaction
+    @Override
+    public void addDoses(Map<String, Long> deltas) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String addDoses = "UPDATE Vaccines SET Doses = Doses + ? WHERE Name = ?";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepare(addDoses);
+            for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+                statement.setLong(1, delta.getValue());
+                statement.setString(2, delta.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            con.commit();
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public long findAppliedSeq(String journalId) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getApplied = "SELECT Seq FROM JournalApplied WHERE JournalId = ?";
+        try {
+            PreparedStatement statement = cm.prepare(getApplied);
+            statement.setString(1, journalId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getLong("Seq") : 0;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    // The JournalApplied row is moved forward first, or created for a journal's first records; if it isn't at
+    // afterSeq, nothing else is done
+    @Override
+    public boolean addDoses(Map<String, Long> deltas, String journalId, long afterSeq, long seq)
+            throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        Connection con = cm.createConnection();
+
+        String advance = "UPDATE JournalApplied SET Seq = ? WHERE JournalId = ? AND Seq = ?";
+        String first = "INSERT INTO JournalApplied SELECT ?, ? " +
+                "WHERE NOT EXISTS (SELECT 1 FROM JournalApplied WITH (UPDLOCK) WHERE JournalId = ?)";
+        String addDoses = "UPDATE Vaccines SET Doses = Doses + ? WHERE Name = ?";
+        try {
+            con.setAutoCommit(false);
+            PreparedStatement statement = cm.prepare(advance);
+            statement.setLong(1, seq);
+            statement.setString(2, journalId);
+            statement.setLong(3, afterSeq);
+            if (statement.executeUpdate() == 0) {
+                if (afterSeq != 0) {
+                    con.rollback();
+                    return false;
+                }
+                statement = cm.prepare(first);
+                statement.setString(1, journalId);
+                statement.setLong(2, seq);
+                statement.setString(3, journalId);
+                if (statement.executeUpdate() == 0) {
+                    con.rollback();
+                    return false;
+                }
+            }
+            statement = cm.prepare(addDoses);
+            for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+                statement.setLong(1, delta.getValue());
+                statement.setString(2, delta.getKey());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            con.commit();
+            return true;
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package scheduler.storage.sqlserver;
+
+import scheduler.db.ConnectionManager;
+import scheduler.model.Appointment;
+import scheduler.model.Waiter;
+import scheduler.storage.WaitlistRepository;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+class SqlServerWaitlistRepository implements WaitlistRepository {
+
+    // Joins the queue unless already in it, and counts the queue up to the new entry
+    private static final String ADD =
+            "SET NOCOUNT ON; " +
+            "DECLARE @time date = ?, @vaccine varchar(255) = ?, @patient varchar(255) = ?; " +
+            "INSERT INTO Waitlist (Time, V_Name, P_Username) SELECT @time, @vaccine, @patient " +
+            "    WHERE NOT EXISTS (SELECT 1 FROM Waitlist WITH (UPDLOCK) " +
+            "        WHERE Time = @time AND V_Name = @vaccine AND P_Username = @patient); " +
+            "IF @@ROWCOUNT = 0 " +
+            "    SELECT 0 position; " +
+            "ELSE " +
+            "    SELECT COUNT(*) position FROM Waitlist " +
+            "        WHERE Time = @time AND V_Name = @vaccine AND Waitlist_id <= SCOPE_IDENTITY();";
+
+    // Numbers the given waiters and the free slots of the date and pairs them up by number: the n-th oldest
+    // waiter gets the n-th free caregiver. Slots, appointments and the waitlist change in one transaction, with
+    // one statement each however many waiters there are.
+    private static final String ALLOCATE =
+            "SET NOCOUNT ON; " +
+            "SET XACT_ABORT ON; " +
+            "DECLARE @time date = ?, @ids varchar(max) = ?; " +
+            "DECLARE @waiters TABLE (n int PRIMARY KEY, Waitlist_id int, P_Username varchar(255), " +
+            "    V_Name varchar(255)); " +
+            "DECLARE @slots TABLE (n int PRIMARY KEY, Username varchar(255)); " +
+            "DECLARE @booked TABLE (Appointment_id int, P_Username varchar(255), C_Username varchar(255), " +
+            "    V_Name varchar(255)); " +
+            "BEGIN TRANSACTION; " +
+            "INSERT INTO @waiters " +
+            "    SELECT ROW_NUMBER() OVER (ORDER BY w.Waitlist_id), w.Waitlist_id, w.P_Username, w.V_Name " +
+            "    FROM Waitlist AS w WITH (UPDLOCK) JOIN STRING_SPLIT(@ids, ',') AS s " +
+            "        ON w.Waitlist_id = CAST(s.value AS int) " +
+            "    WHERE w.Time = @time; " +
+            "DECLARE @n int = @@ROWCOUNT; " +
+            "INSERT INTO @slots " +
+            "    SELECT TOP (@n) ROW_NUMBER() OVER (ORDER BY Username), Username " +
+            "    FROM Availabilities WITH (UPDLOCK, ROWLOCK) WHERE Time = @time AND Available = 1 ORDER BY Username; " +
+            "UPDATE a SET Available = 0 FROM Availabilities AS a " +
+            "    JOIN @slots AS s ON a.Time = @time AND a.Username = s.Username; " +
+            "INSERT INTO Appointments (Time, P_Username, C_Username, V_Name) " +
+            "    OUTPUT INSERTED.Appointment_id, INSERTED.P_Username, INSERTED.C_Username, INSERTED.V_Name " +
+            "        INTO @booked " +
+            "    SELECT @time, w.P_Username, s.Username, w.V_Name FROM @waiters AS w JOIN @slots AS s ON w.n = s.n; " +
+            "DELETE w FROM Waitlist AS w JOIN @waiters AS x ON w.Waitlist_id = x.Waitlist_id " +
+            "    JOIN @slots AS s ON x.n = s.n; " +
+            "COMMIT TRANSACTION; " +
+            "SELECT Appointment_id, P_Username, C_Username, V_Name FROM @booked ORDER BY Appointment_id;";
+
+    @Override
+    public int add(Date time, String vaccine, String patient) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        try {
+            PreparedStatement statement = cm.prepare(ADD);
+            statement.setDate(1, time);
+            statement.setString(2, vaccine);
+            statement.setString(3, patient);
+            try (ResultSet resultSet = SqlServerAppointmentRepository.firstResultSet(statement)) {
+                resultSet.next();
+                return resultSet.getInt("position");
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public List<Waiter> findWaiting(Date time, int afterId, int limit) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getWaiters = "SELECT TOP (?) Waitlist_id, P_Username, V_Name FROM Waitlist " +
+                "WHERE Time = ? AND Waitlist_id > ? ORDER BY Waitlist_id";
+        try {
+            PreparedStatement statement = cm.prepare(getWaiters);
+            statement.setInt(1, limit);
+            statement.setDate(2, time);
+            statement.setInt(3, afterId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<Waiter> waiters = new ArrayList<>();
+                while (resultSet.next()) {
+                    waiters.add(new Waiter.WaiterBuilder(resultSet.getInt("Waitlist_id"), time,
+                            resultSet.getString("P_Username"), resultSet.getString("V_Name")).build());
+                }
+                return waiters;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public SortedSet<Date> findDates(String vaccine) throws SQLException {
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        String getDates = "SELECT DISTINCT Time FROM Waitlist" + (vaccine == null ? "" : " WHERE V_Name = ?");
+        try {
+            PreparedStatement statement = cm.prepare(getDates);
+            if (vaccine != null) {
+                statement.setString(1, vaccine);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                SortedSet<Date> dates = new TreeSet<>();
+                while (resultSet.next()) {
+                    dates.add(resultSet.getDate("Time"));
+                }
+                return dates;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+
+    @Override
+    public List<Appointment> allocate(Date time, List<Waiter> waiters) throws SQLException {
+        List<Appointment> booked = new ArrayList<>();
+        if (waiters.isEmpty()) {
+            return booked;
+        }
+        ConnectionManager cm = new ConnectionManager();
+        cm.createConnection();
+
+        // the ids travel as one comma-separated parameter, as upload_availability does with dates
+        StringBuilder ids = new StringBuilder(waiters.size() * 8);
+        for (Waiter waiter : waiters) {
+            if (ids.length() > 0) {
+                ids.append(',');
+            }
+            ids.append(waiter.getWaiterId());
+        }
+        try {
+            PreparedStatement statement = cm.prepare(ALLOCATE);
+            statement.setDate(1, time);
+            statement.setString(2, ids.toString());
+            try (ResultSet resultSet = SqlServerAppointmentRepository.firstResultSet(statement)) {
+                while (resultSet.next()) {
+                    booked.add(new Appointment.AppointmentBuilder(resultSet.getInt("Appointment_id"), time,
+                            resultSet.getString("P_Username"), resultSet.getString("C_Username"),
+                            resultSet.getString("V_Name")).build());
+                }
+                return booked;
+            }
+        } catch (SQLException e) {
+            throw new SQLException(e.getMessage(), e.getSQLState(), e.getErrorCode(), e);
+        } finally {
+            cm.closeConnection();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package scheduler.util;
+
+import scheduler.metrics.Metrics;
+import scheduler.metrics.Timer;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hashes passwords with PBKDF2 on a small dedicated pool of worker threads, so that a burst of logins uses at
+// most a fixed number of cores and other commands keep running. Each worker keeps its own SecretKeyFactory and
+// SecureRandom instead of looking them up and seeding them for every password.
+//
+// The algorithm, iteration count and key length for new hashes come from the HashAlgorithm, HashIterations and
+// HashKeyLength environment variables. Each stored hash records the HashSpec it was made with, so old hashes keep
+// verifying and are upgraded the next time their user logs in.
+public class PasswordHasher {
+
+    // salts and hashes are stored in BINARY(16) columns
+    public static final int SALT_LENGTH = 16;
+    private static final int MAX_KEY_LENGTH_BITS = 128;
+
+    private static final Timer hashTimer = Metrics.timer("hash");
+
+    // built from the environment; a setting the constructor would reject is reported and replaced by its default
+    // rather than failing class initialization, which would break every login for the life of the process
+    private static final PasswordHasher instance = new PasswordHasher(
+            new HashSpec(getEnvAlgorithm("HashAlgorithm", HashSpec.LEGACY.algorithm),
+                    getEnvInt("HashIterations", HashSpec.LEGACY.iterations, 1, Integer.MAX_VALUE),
+                    getEnvKeyLength("HashKeyLength", HashSpec.LEGACY.keyLengthBits)),
+            getEnvInt("HashThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2), 1, 1024),
+            getEnvInt("HashQueueSize", 1024, 1, 1 << 20));
+
+    private final HashSpec currentSpec;
+    private final ThreadPoolExecutor workers;
+    private final ThreadLocal<Map<String, SecretKeyFactory>> factories = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(SecureRandom::new);
+
+    public PasswordHasher(HashSpec currentSpec, int threads, int queueSize) {
+        if (currentSpec.keyLengthBits <= 0 || currentSpec.keyLengthBits > MAX_KEY_LENGTH_BITS
+                || currentSpec.keyLengthBits % 8 != 0) {
+            throw new IllegalArgumentException("Key length must be a multiple of 8 up to " + MAX_KEY_LENGTH_BITS +
+                    " bits: " + currentSpec.keyLengthBits);
+        }
+        this.currentSpec = currentSpec;
+        AtomicInteger count = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread t = new Thread(r, "password-hasher-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public static PasswordHasher getInstance() {
+        return instance;
+    }
+
+    // The spec used for new hashes
+    public HashSpec getCurrentSpec() {
+        return currentSpec;
+    }
+
+    public byte[] generateSalt() {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.get().nextBytes(salt);
+        return salt;
+    }
+
+    // Hash with the current spec
+    public byte[] hash(String password, byte[] salt) {
+        return hash(password, salt, currentSpec);
+    }
+
+    // Hash on the worker pool, waiting for the result. Throws IllegalStateException if too many hashes are
+    // already waiting.
+    public byte[] hash(String password, byte[] salt, HashSpec spec) {
+        long start = hashTimer.start();
+        Future<byte[]> result;
+        try {
+            result = workers.submit(() -> compute(password, salt, spec));
+        } catch (RejectedExecutionException e) {
+            hashTimer.fail(start);
+            throw new IllegalStateException("Too many password checks in progress, please try again!");
+        }
+        try {
+            byte[] hash = result.get();
+            hashTimer.stop(start);
+            return hash;
+        } catch (InterruptedException e) {
+            hashTimer.fail(start);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing password");
+        } catch (ExecutionException e) {
+            hashTimer.fail(start);
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // Check a password against a stored hash. The stored hash may carry zero padding from its BINARY column.
+    public boolean verify(String password, byte[] salt, byte[] storedHash, HashSpec spec) {
+        byte[] calculatedHash = hash(password, salt, spec);
+        if (storedHash.length < calculatedHash.length) {
+            return false;
+        }
+        return MessageDigest.isEqual(Arrays.copyOf(storedHash, calculatedHash.length), calculatedHash);
+    }
+
+    // Whether a hash made with the given spec should be replaced by one made with the current spec
+    public boolean needsRehash(HashSpec spec) {
+        return !currentSpec.equals(spec);
+    }
+
+    private byte[] compute(String password, byte[] salt, HashSpec spec) {
+        PBEKeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, spec.iterations, spec.keyLengthBits);
+        try {
+            SecretKeyFactory factory = factories.get().get(spec.algorithm);
+            if (factory == null) {
+                factory = SecretKeyFactory.getInstance(spec.algorithm);
+                factories.get().put(spec.algorithm, factory);
+            }
+            return factory.generateSecret(keySpec).getEncoded();
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
+            throw new IllegalStateException(ex);
+        } finally {
+            keySpec.clearPassword();
+        }
+    }
+
+    // An algorithm the JDK has a SecretKeyFactory for
+    private static String getEnvAlgorithm(String name, String defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            SecretKeyFactory.getInstance(value.trim());
+            return value.trim();
+        } catch (NoSuchAlgorithmException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    private static int getEnvInt(String name, int defaultValue, int min, int max) {
+        int value = Util.getEnvInt(name, defaultValue);
+        if (value < min || value > max) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    private static int getEnvKeyLength(String name, int defaultValue) {
+        int value = getEnvInt(name, defaultValue, 8, MAX_KEY_LENGTH_BITS);
+        if (value % 8 != 0) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+        return value;
+    }
+
+    // The parameters a hash was made with, stored next to it as "algorithm:iterations:keyLengthBits"
+    public static class HashSpec {
+        // what every hash was made with before the spec was stored; a NULL HashSpec column means this
+        public static final HashSpec LEGACY = new HashSpec("PBKDF2WithHmacSHA1", 10, 16);
+
+        private final String algorithm;
+        private final int iterations;
+        private final int keyLengthBits;
+
+        public HashSpec(String algorithm, int iterations, int keyLengthBits) {
+            this.algorithm = algorithm;
+            this.iterations = iterations;
+            this.keyLengthBits = keyLengthBits;
+        }
+
+        // Parse a stored spec, a null value is the legacy spec
+        public static HashSpec parse(String encoded) {
+            if (encoded == null) {
+                return LEGACY;
+            }
+            String[] parts = encoded.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid hash spec: " + encoded);
+            }
+            return new HashSpec(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        }
+
+        public String encode() {
+            return algorithm + ":" + iterations + ":" + keyLengthBits;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof HashSpec)) {
+                return false;
+            }
+            HashSpec other = (HashSpec) o;
+            return iterations == other.iterations && keyLengthBits == other.keyLengthBits
+                    && algorithm.equals(other.algorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            return (algorithm.hashCode() * 31 + iterations) * 31 + keyLengthBits;
+        }
+
+        @Override
+        public String toString() {
+            return encode();
+        }
+    }
+}
@@ -1,41 +1,60 @@
 package scheduler.util;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Statement;
 import java.util.Arrays;
 
 public class Util {
 
-    // constants for handling password
-    private static final int HASH_STRENGTH = 10;
-    private static final int KEY_LENGTH = 16;
-
     public static byte[] generateSalt() {
         // Generate a random cryptographic salt
-        SecureRandom random = new SecureRandom();
-        byte[] salt = new byte[16];
-        random.nextBytes(salt);
-        return salt;
+        return PasswordHasher.getInstance().generateSalt();
     }
 
     public static byte[] generateHash(String password, byte[] salt) {
-        // Specify the hash parameters
-        KeySpec spec = new PBEKeySpec(password.toCharArray(), salt, HASH_STRENGTH, KEY_LENGTH);
+        // Hash with the configured spec on the password hashing workers
+        return PasswordHasher.getInstance().hash(password, salt);
+    }
+
+    // A file named by a command, in DataDir (the working directory if it isn't set). Throws IllegalArgumentException
+    // with a user-facing message for an absolute name or one that climbs out of the directory.
+    public static Path resolveDataFile(String name) {
+        String dir = System.getenv("DataDir");
+        Path base = Paths.get(dir == null || dir.trim().isEmpty() ? "" : dir.trim()).toAbsolutePath().normalize();
+        Path path = Paths.get(name);
+        boolean climbs = false;
+        for (Path part : path) {
+            climbs |= part.toString().equals("..");
+        }
+        Path file = base.resolve(path).normalize();
+        if (path.isAbsolute() || path.getRoot() != null || climbs || !file.startsWith(base)) {
+            throw new IllegalArgumentException("Files must be named relative to the data directory!");
+        }
+        return file;
+    }
 
-        // Generate the hash
-        SecretKeyFactory factory = null;
-        byte[] hash = null;
+    // Read an integer setting from the environment, falling back to the default if it is missing or invalid
+    public static int getEnvInt(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null) {
+            return defaultValue;
+        }
         try {
-            factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-            hash = factory.generateSecret(spec).getEncoded();
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
-            throw new IllegalStateException();
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Ignoring invalid value for " + name + ": " + value);
+            return defaultValue;
+        }
+    }
+
+    // Turn the update counts of an executeBatch() of conditional inserts into whether each row was inserted
+    public static boolean[] toInserted(int[] updateCounts) {
+        boolean[] inserted = new boolean[updateCounts.length];
+        for (int i = 0; i < updateCounts.length; i++) {
+            inserted[i] = updateCounts[i] > 0 || updateCounts[i] == Statement.SUCCESS_NO_INFO;
         }
-        return hash;
+        return inserted;
     }
 
     public static byte[] trim(byte[] bytes)
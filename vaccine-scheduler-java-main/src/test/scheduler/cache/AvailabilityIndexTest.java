@@ -0,0 +1,84 @@
+package scheduler.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import scheduler.model.Appointment;
+import scheduler.model.Credentials;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.Storages;
+import scheduler.storage.memory.MemoryStorage;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+// The hooks of two changes to the same slot, run in the opposite order of their commits
+class AvailabilityIndexTest {
+
+    private static final Credentials CREDENTIALS = new Credentials(new byte[16], new byte[16], HashSpec.LEGACY);
+    private static final Date DAY = Date.valueOf("2030-01-01");
+
+    private MemoryStorage storage;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        storage = new MemoryStorage(SlotSelection.FIRST);
+        storage.caregivers().insert("c0", CREDENTIALS);
+        storage.availabilities().insert(DAY, "c0");
+        storage.patients().insert("p0", CREDENTIALS);
+        storage.patients().insert("p1", CREDENTIALS);
+        storage.vaccines().insert("v", 10);
+        Storages.set(storage);
+        AvailabilityIndex.invalidate();
+        assertEquals(List.of("c0"), AvailabilityIndex.getInstance().getAvailableCaregivers(DAY));
+    }
+
+    @AfterEach
+    void tearDown() {
+        AvailabilityIndex.invalidate();
+        Storages.set(null);
+    }
+
+    @Test
+    void releaseAfterTheSlotWasBookedAgain() throws SQLException {
+        Appointment first = storage.appointments().reserve(DAY, "p0", "v");
+        AvailabilityIndex.slotBooked(DAY, "c0");
+        assertNotNull(storage.appointments().cancel(first.getAppointmentId(), "p0", null));
+        assertNotNull(storage.appointments().reserve(DAY, "p1", "v"));
+
+        AvailabilityIndex.slotBooked(DAY, "c0");
+        AvailabilityIndex.slotReleased(DAY, "c0");
+
+        assertEquals(Collections.emptyList(), AvailabilityIndex.getInstance().getAvailableCaregivers(DAY));
+    }
+
+    @Test
+    void releaseAfterTheSlotWasWithdrawn() throws SQLException {
+        Appointment appointment = storage.appointments().reserve(DAY, "p0", "v");
+        AvailabilityIndex.slotBooked(DAY, "c0");
+        assertNotNull(storage.appointments().cancel(appointment.getAppointmentId(), "p0", null));
+        storage.appointments().cancelAll("c0", DAY, DAY);
+
+        AvailabilityIndex.slotsWithdrawn("c0", DAY, DAY);
+        AvailabilityIndex.slotReleased(DAY, "c0");
+
+        assertEquals(0, AvailabilityIndex.getInstance().getAvailableCount(DAY));
+    }
+
+    @Test
+    void withdrawalAfterTheSlotWasPublishedAgain() throws SQLException {
+        storage.appointments().cancelAll("c0", DAY, DAY);
+        storage.availabilities().insert(DAY, "c0");
+
+        AvailabilityIndex.slotPublished(DAY, "c0");
+        AvailabilityIndex.slotsWithdrawn("c0", DAY, DAY);
+
+        assertEquals(List.of("c0"), AvailabilityIndex.getInstance().getAvailableCaregivers(DAY));
+    }
+}
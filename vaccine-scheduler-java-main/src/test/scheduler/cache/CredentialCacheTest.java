@@ -0,0 +1,96 @@
+package scheduler.cache;
+
+import org.junit.jupiter.api.Test;
+import scheduler.model.Credentials;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CredentialCacheTest {
+
+    private static final Credentials CREDENTIALS = new Credentials(new byte[16], new byte[16], HashSpec.LEGACY);
+    private static final long HOUR = 3_600_000;
+
+    // usernames starting with "p" exist, the loads are recorded
+    private final List<String> loads = new ArrayList<>();
+    private final CredentialCache.Loader loader = username -> {
+        loads.add(username);
+        return username.startsWith("p") ? CREDENTIALS : null;
+    };
+
+    @Test
+    void usersAndMissingUsersAreBothCached() throws SQLException {
+        CredentialCache cache = new CredentialCache("test", 10, HOUR, HOUR, loader);
+        for (int i = 0; i < 3; i++) {
+            assertSame(CREDENTIALS, cache.get("p0"));
+            assertFalse(cache.exists("nobody"));
+        }
+        assertEquals(List.of("p0", "nobody"), loads);
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getNegativeHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    // a made-up name is forgotten long before a real user is
+    @Test
+    void missingUsersExpireSooner() throws SQLException, InterruptedException {
+        CredentialCache cache = new CredentialCache("test", 10, HOUR, 1, loader);
+        cache.get("p0");
+        cache.get("nobody");
+        Thread.sleep(20);
+        cache.get("p0");
+        cache.get("nobody");
+        assertEquals(List.of("p0", "nobody", "nobody"), loads);
+    }
+
+    @Test
+    void usersExpireAfterTheTtl() throws SQLException, InterruptedException {
+        CredentialCache cache = new CredentialCache("test", 10, 1, HOUR, loader);
+        cache.get("p0");
+        Thread.sleep(20);
+        cache.get("p0");
+        assertEquals(List.of("p0", "p0"), loads);
+    }
+
+    // a user created while their name was being looked up must not be cached as missing
+    @Test
+    void putDuringALoadWins() throws SQLException {
+        CredentialCache[] cache = new CredentialCache[1];
+        cache[0] = new CredentialCache("test", 10, HOUR, HOUR, username -> {
+            loads.add(username);
+            cache[0].put(username, CREDENTIALS);
+            return null;
+        });
+        assertNull(cache[0].get("new"));
+        assertTrue(cache[0].exists("new"));
+        assertEquals(List.of("new"), loads);
+
+        cache[0].put("new", null);
+        assertFalse(cache[0].exists("new"));
+        cache[0].invalidate("new");
+        cache[0].get("new");
+        assertEquals(List.of("new", "new"), loads);
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() throws SQLException {
+        CredentialCache cache = new CredentialCache("test", 2, HOUR, HOUR, loader);
+        cache.get("p0");
+        cache.get("p1");
+        cache.get("p0");
+        cache.get("p2");
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        cache.get("p0");
+        cache.get("p1");
+        assertEquals(List.of("p0", "p1", "p2", "p1"), loads);
+    }
+}
@@ -0,0 +1,157 @@
+package scheduler.campaign;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.DoseInventory;
+import scheduler.campaign.CampaignPlan.Unassigned;
+import scheduler.model.Appointment;
+import scheduler.model.Credentials;
+import scheduler.storage.AppointmentQuery;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.Storages;
+import scheduler.storage.memory.MemoryStorage;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CampaignPlannerTest {
+
+    private static final Credentials CREDENTIALS = new Credentials(new byte[16], new byte[16], HashSpec.LEGACY);
+
+    private MemoryStorage storage;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        storage = new MemoryStorage(SlotSelection.FIRST);
+        storage.caregivers().insert("c0", CREDENTIALS);
+        storage.caregivers().insert("c1", CREDENTIALS);
+        for (String patient : List.of("a", "b", "c", "d")) {
+            storage.patients().insert(patient, CREDENTIALS);
+        }
+        storage.vaccines().insert("v", 10);
+        storage.vaccines().insert("w", 1);
+        Storages.set(storage);
+        reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reset();
+        Storages.set(null);
+    }
+
+    // The patient whose window ends first gets the first slot, so both are placed even though a comes first
+    @Test
+    void earliestDeadlineFirst() throws IOException, SQLException {
+        storage.availabilities().insert(Date.valueOf("2030-01-01"), "c0");
+        storage.availabilities().insert(Date.valueOf("2030-01-02"), "c0");
+
+        CampaignPlan plan = new CampaignPlanner().plan(read(
+                "a v 2030-01-01 2030-01-02",
+                "b v 2030-01-01 2030-01-01"));
+
+        assertEquals(Map.of("a", "2030-01-02 c0 v", "b", "2030-01-01 c0 v"), planned(plan));
+        assertEquals(0, plan.getUnassigned().size());
+    }
+
+    @Test
+    void preferenceFallsBackWhenAVaccineRunsOut() throws IOException, SQLException {
+        storage.availabilities().insert(Date.valueOf("2030-01-01"), "c0");
+        storage.availabilities().insert(Date.valueOf("2030-01-01"), "c1");
+
+        CampaignPlan plan = new CampaignPlanner().plan(read(
+                "a w,v 2030-01-01 2030-01-01",
+                "b w,v 2030-01-01 2030-01-01"));
+
+        assertEquals(Map.of("a", "2030-01-01 c0 w", "b", "2030-01-01 c1 v"), planned(plan));
+    }
+
+    @Test
+    void unplaceablePatientsAreReported() throws IOException, SQLException {
+        storage.availabilities().insert(Date.valueOf("2030-01-01"), "c0");
+        storage.availabilities().insert(Date.valueOf("2030-01-01"), "c1");
+        storage.availabilities().insert(Date.valueOf("2030-01-02"), "c0");
+        storage.appointments().reserve(Date.valueOf("2030-01-01"), "c", "v");
+
+        CampaignPlan plan = new CampaignPlanner().plan(read(
+                "a v 2030-01-02 2030-01-02",
+                "a v 2030-01-01 2030-01-01",
+                "nobody v 2030-01-01 2030-01-01",
+                "b x 2030-01-01 2030-01-01",
+                "c v 2030-01-01 2030-01-02",
+                "d v 2030-01-03 2030-01-03"));
+
+        assertEquals(Map.of("a", "2030-01-02 c0 v"), planned(plan));
+        assertEquals(Map.of(
+                "a", "Listed more than once",
+                "nobody", "No such patient",
+                "b", "No such vaccine",
+                "c", "Already has an appointment on 2030-01-01",
+                "d", "No free caregiver from 2030-01-03 to 2030-01-03"), reasons(plan));
+    }
+
+    @Test
+    void campaignSpanIsBounded() throws IOException {
+        List<CampaignRequest> requests = read(
+                "a v 0001-01-01 0001-01-01",
+                "b v 9999-12-31 9999-12-31");
+        assertThrows(IllegalStateException.class, () -> new CampaignPlanner().plan(requests));
+    }
+
+    @Test
+    void runBooksThePlanAndTakesTheDoses() throws IOException, SQLException {
+        storage.availabilities().insert(Date.valueOf("2030-01-01"), "c0");
+
+        CampaignPlan plan = new CampaignPlanner().run(read("a v 2030-01-01 2030-01-01"));
+
+        assertEquals(1, plan.getPlanned().size());
+        assertEquals(9, DoseInventory.getInstance().getDoses("v"));
+        assertEquals(0, AvailabilityIndex.getInstance().getAvailableCount(Date.valueOf("2030-01-01")));
+        assertEquals(1, storage.appointments().forEachOfCaregiver("c0",
+                new AppointmentQuery(0, 10, null, null), appointment -> { }));
+    }
+
+    @Test
+    void readRejectsLongWindows() {
+        assertThrows(IllegalArgumentException.class, () -> read("a v 2030-01-01 2031-06-01"));
+        assertThrows(IllegalArgumentException.class, () -> read("a v 2030-01-02 2030-01-01"));
+    }
+
+    private static void reset() {
+        DoseInventory.shutdown();
+        AvailabilityIndex.invalidate();
+    }
+
+    private static List<CampaignRequest> read(String... lines) throws IOException {
+        return CampaignPlanner.read(new BufferedReader(new StringReader(String.join("\n", lines))));
+    }
+
+    private static Map<String, String> planned(CampaignPlan plan) {
+        Map<String, String> planned = new HashMap<>();
+        for (Appointment appointment : plan.getPlanned()) {
+            planned.put(appointment.getPatientName(), appointment.getTime() + " " + appointment.getCaregiverName() +
+                    " " + appointment.getVaccineName());
+        }
+        return planned;
+    }
+
+    private static Map<String, String> reasons(CampaignPlan plan) {
+        Map<String, String> reasons = new HashMap<>();
+        for (Unassigned unassigned : plan.getUnassigned()) {
+            reasons.put(unassigned.getPatientName(), unassigned.getReason());
+        }
+        return reasons;
+    }
+}
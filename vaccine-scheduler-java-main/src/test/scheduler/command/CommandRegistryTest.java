@@ -0,0 +1,65 @@
+package scheduler.command;
+
+import org.junit.jupiter.api.Test;
+import scheduler.command.Command.CommandBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandRegistryTest {
+
+    // enough commands to grow the table a few times
+    @Test
+    void findsEveryRegisteredCommand() {
+        CommandRegistry<Void> registry = new CommandRegistry<>();
+        List<Command<Void>> commands = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Command<Void> command = command("command" + i);
+            commands.add(command);
+            registry.register(command);
+        }
+        for (Command<Void> command : commands) {
+            assertSame(command, registry.lookup(new Tokens(command.getName() + " arg")));
+        }
+        assertEquals(commands, registry.getCommands());
+        assertNull(registry.find("command100"));
+        assertNull(registry.find("command"));
+        assertNull(registry.lookup(new Tokens("")));
+    }
+
+    // "Aa" and "BB" have the same hash code, so the second one is found by probing past the first
+    @Test
+    void collidingNamesAreToldApart() {
+        Command<Void> aa = command("Aa");
+        Command<Void> bb = command("BB");
+        CommandRegistry<Void> registry = new CommandRegistry<Void>().register(aa).register(bb);
+        assertSame(aa, registry.find("Aa"));
+        assertSame(bb, registry.find("BB"));
+    }
+
+    @Test
+    void namesAreRegisteredOnce() {
+        CommandRegistry<Void> registry = new CommandRegistry<Void>().register(command("quit"));
+        assertThrows(IllegalArgumentException.class, () -> registry.register(command("quit")));
+    }
+
+    @Test
+    void argumentCountsAreChecked() {
+        Command<Void> command = new CommandBuilder<Void>("reserve", (session, tokens) -> { }).args(1, 2).build();
+        assertFalse(command.acceptsArgs(new Tokens("reserve")));
+        assertTrue(command.acceptsArgs(new Tokens("reserve v")));
+        assertTrue(command.acceptsArgs(new Tokens("reserve v 2030-01-01")));
+        assertFalse(command.acceptsArgs(new Tokens("reserve v 2030-01-01 2030-01-02")));
+    }
+
+    private static Command<Void> command(String name) {
+        return new CommandBuilder<Void>(name, (session, tokens) -> { }).build();
+    }
+}
@@ -0,0 +1,45 @@
+package scheduler.command;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokensTest {
+
+    @Test
+    void splitsOnAnyRunOfWhitespace() {
+        Tokens tokens = new Tokens("  reserve\t2030-01-01   v \n");
+        assertEquals(3, tokens.size());
+        assertEquals("reserve", tokens.get(0));
+        assertEquals("2030-01-01", tokens.get(1));
+        assertEquals("v", tokens.get(2));
+        assertEquals(0, new Tokens(" \t ").size());
+    }
+
+    @Test
+    void comparesAndHashesInPlace() {
+        Tokens tokens = new Tokens("login p0 secret");
+        assertTrue(tokens.equalsAt(0, "login"));
+        assertFalse(tokens.equalsAt(0, "logout"));
+        assertFalse(tokens.equalsAt(1, "p"));
+        for (int i = 0; i < tokens.size(); i++) {
+            assertEquals(tokens.get(i).hashCode(), tokens.hashAt(i));
+        }
+    }
+
+    // reuse drops the previous line's tokens, and lines longer than the initial capacity grow the arrays
+    @Test
+    void resetReplacesTheLine() {
+        Tokens tokens = new Tokens("a b c d e f g h i j");
+        assertEquals(10, tokens.size());
+        assertEquals("j", tokens.get(9));
+        tokens.reset("quit");
+        assertEquals(1, tokens.size());
+        assertEquals("quit", tokens.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> tokens.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> tokens.equalsAt(-1, "quit"));
+    }
+}
@@ -0,0 +1,117 @@
+package scheduler.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RingBufferTest {
+
+    @Test
+    void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(4, new RingBuffer<Integer>(1).capacity());
+        assertEquals(4, new RingBuffer<Integer>(4).capacity());
+        assertEquals(8, new RingBuffer<Integer>(5).capacity());
+        assertEquals(1024, new RingBuffer<Integer>(1024).capacity());
+    }
+
+    // a full buffer refuses new elements until the consumer takes one
+    @Test
+    void offerFailsWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, buffer.poll());
+        }
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    // the sequences run many times around the array, with the buffer at every fill level
+    @Test
+    void elementsKeepTheirOrderAcrossWraparound() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(8);
+        int offered = 0;
+        int polled = 0;
+        for (int round = 0; round < 1000; round++) {
+            int add = round % 9;
+            for (int i = 0; i < add && buffer.offer(offered); i++) {
+                offered++;
+            }
+            int take = (round * 7) % 9;
+            for (int i = 0; i < take; i++) {
+                Integer element = buffer.poll();
+                if (element == null) {
+                    break;
+                }
+                assertEquals(polled++, element);
+            }
+            assertEquals(offered - polled, buffer.size());
+        }
+        assertTrue(offered > 8 * 100);
+    }
+
+    // producers retry while the buffer is full; every element arrives once and each producer's stay in order
+    @Test
+    void concurrentProducersLoseNothing() throws Exception {
+        int producers = 4;
+        int perProducer = 20_000;
+        RingBuffer<long[]> buffer = new RingBuffer<>(64);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (long i = 0; i < perProducer; i++) {
+                    long[] element = {producer, i};
+                    while (!buffer.offer(element)) {
+                        Thread.yield();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+
+        long[] next = new long[producers];
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        for (long received = 0; received < (long) producers * perProducer; ) {
+            long[] element = buffer.poll();
+            if (element == null) {
+                assertTrue(System.nanoTime() < deadline, "timed out after " + received);
+                Thread.yield();
+                continue;
+            }
+            assertEquals(next[(int) element[0]]++, element[1]);
+            received++;
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        assertTrue(buffer.isEmpty());
+        for (long n : next) {
+            assertEquals(perProducer, n);
+        }
+    }
+}
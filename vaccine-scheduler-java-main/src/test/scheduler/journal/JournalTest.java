@@ -0,0 +1,100 @@
+package scheduler.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import scheduler.storage.VaccineRepository;
+import scheduler.storage.memory.MemoryStorage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsSurviveReopening() throws IOException {
+        String id;
+        try (Journal journal = Journal.open(dir, 1 << 16)) {
+            id = journal.getId();
+            for (int i = 1; i <= 3; i++) {
+                assertEquals(i, journal.append(bytes("record " + i)));
+            }
+        }
+        try (Journal journal = Journal.open(dir, 1 << 16)) {
+            assertEquals(id, journal.getId());
+            List<JournalEntry> entries = journal.read(1, 10);
+            assertEquals(2, entries.size());
+            assertEquals(2, entries.get(0).getSeq());
+            assertArrayEquals(bytes("record 3"), entries.get(1).getPayload());
+            // sequence numbers carry on
+            assertEquals(4, journal.append(bytes("record 4")));
+        }
+    }
+
+    @Test
+    void truncateKeepsTheRecordsNotApplied() throws IOException {
+        // room for a few records per segment, so that they spread over several
+        try (Journal journal = Journal.open(dir, 64)) {
+            for (int i = 1; i <= 20; i++) {
+                journal.append(bytes("record " + i));
+            }
+            journal.truncate(10);
+            List<JournalEntry> entries = journal.read(10, 100);
+            assertEquals(10, entries.size());
+            assertEquals(11, entries.get(0).getSeq());
+        }
+        try (Journal journal = Journal.open(dir, 64)) {
+            assertEquals(10, journal.read(10, 100).size());
+            assertEquals(21, journal.append(bytes("record 21")));
+        }
+    }
+
+    // A crash after the database applied a batch but before the journal was truncated: the batch is replayed from
+    // the journal, and the JournalApplied mark makes the database skip it
+    @Test
+    void replayAfterACrashIsAppliedOnce() throws IOException, SQLException {
+        VaccineRepository vaccines = new MemoryStorage().vaccines();
+        vaccines.insert("v", 10);
+        Map<String, Long> batch = Collections.singletonMap("v", 3L);
+        String id;
+        try (Journal journal = Journal.open(dir, 1 << 16)) {
+            id = journal.getId();
+            for (int i = 0; i < 3; i++) {
+                journal.append(bytes("v +1"));
+            }
+            assertTrue(vaccines.addDoses(batch, id, 0, 3));
+        }
+
+        try (Journal journal = Journal.open(dir, 1 << 16)) {
+            assertEquals(3, journal.read(0, 10).size());
+            assertFalse(vaccines.addDoses(batch, id, 0, 3));
+            long applied = vaccines.findAppliedSeq(id);
+            assertEquals(3, applied);
+            assertTrue(journal.read(applied, 10).isEmpty());
+        }
+        assertEquals(13, vaccines.findDoses("v"));
+    }
+
+    @Test
+    void rejectsSegmentsThatCantBeMapped() {
+        assertThrows(IllegalArgumentException.class, () -> Journal.open(dir, 0));
+        assertThrows(IllegalArgumentException.class, () -> Journal.open(dir, 2048L << 20));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+}
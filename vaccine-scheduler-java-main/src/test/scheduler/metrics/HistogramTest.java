@@ -0,0 +1,55 @@
+package scheduler.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistogramTest {
+
+    // Every bucket ends one below where the next begins, from 0 up to Long.MAX_VALUE, and is at most 1/32 of its
+    // values wide
+    @Test
+    void bucketsTileTheRangeOfALong() {
+        int last = Histogram.index(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, Histogram.highestValue(last));
+        long start = 0;
+        for (int i = 0; i <= last; i++) {
+            long end = Histogram.highestValue(i);
+            assertEquals(i, Histogram.index(start));
+            assertEquals(i, Histogram.index(end));
+            assertTrue(end - start <= Math.max(0, start / 32), "bucket " + i);
+            start = end + 1;
+        }
+    }
+
+    @Test
+    void smallValuesGetABucketEach() {
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, Histogram.index(value));
+            assertEquals(value, Histogram.highestValue((int) value));
+        }
+        assertEquals(64, Histogram.index(64));
+        assertEquals(64, Histogram.index(65));
+        assertEquals(65, Histogram.index(66));
+    }
+
+    @Test
+    void percentilesRoundUpToTheirBucket() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(0.5));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+
+        assertEquals(1001, histogram.getCount());
+        assertEquals(1000, histogram.getMax());
+        assertEquals(500500 / 1001.0, histogram.getMean(), 1e-9);
+        assertEquals(0, histogram.getPercentile(0));
+        // the 501st value is 500, which falls into the bucket of 496 to 503
+        assertEquals(503, histogram.getPercentile(0.5));
+        // never above the largest value recorded
+        assertEquals(1000, histogram.getPercentile(1));
+    }
+}
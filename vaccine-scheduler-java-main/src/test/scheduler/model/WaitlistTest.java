@@ -0,0 +1,45 @@
+package scheduler.model;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.Storages;
+import scheduler.storage.memory.MemoryStorage;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaitlistTest {
+
+    private static final Credentials CREDENTIALS = new Credentials(new byte[16], new byte[16], HashSpec.LEGACY);
+
+    private MemoryStorage storage;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        storage = new MemoryStorage(SlotSelection.FIRST);
+        storage.patients().insert("p", CREDENTIALS);
+        storage.vaccines().insert("v", 10);
+        Storages.set(storage);
+        Waitlist.invalidate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Waitlist.invalidate();
+        Storages.set(null);
+    }
+
+    @Test
+    void pastDatesAreRefused() throws SQLException {
+        Date yesterday = Date.valueOf(LocalDate.now().minusDays(1));
+        assertThrows(IllegalStateException.class, () -> Waitlist.join(yesterday, "v", "p"));
+        assertTrue(storage.waitlist().findDates(null).isEmpty());
+    }
+}
@@ -0,0 +1,165 @@
+package scheduler.snapshot;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import scheduler.cache.AvailabilityIndex;
+import scheduler.cache.DoseInventory;
+import scheduler.model.Credentials;
+import scheduler.model.Waitlist;
+import scheduler.storage.SlotSelection;
+import scheduler.storage.Storages;
+import scheduler.storage.Table;
+import scheduler.storage.memory.MemoryStorage;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SnapshotTest {
+
+    private static final LocalDate DAY = LocalDate.of(2030, 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        DoseInventory.shutdown();
+        AvailabilityIndex.invalidate();
+        Waitlist.invalidate();
+        Storages.set(null);
+    }
+
+    // more rows than fit in a block, with nulls, repeated strings, and ids and dates going both ways
+    @Test
+    void rowsSurviveAWriteAndRead() throws IOException {
+        List<Object[]> appointments = new ArrayList<>();
+        for (int i = 0; i < SnapshotWriter.BLOCK_ROWS + 100; i++) {
+            appointments.add(new Object[]{i % 3 == 0 ? -i : i, Date.valueOf(DAY.plusDays(i % 7 - 3)), "p" + i % 5,
+                    i % 11 == 0 ? null : "c" + i, "v"});
+        }
+        List<Object[]> caregivers = new ArrayList<>();
+        caregivers.add(new Object[]{"c\u00e9", new byte[]{1, 2, 3}, new byte[0], null});
+
+        byte[] file = write(writer -> {
+            write(writer, Table.CAREGIVERS, caregivers);
+            write(writer, Table.WAITLIST, new ArrayList<>());
+            write(writer, Table.APPOINTMENTS, appointments);
+        });
+
+        try (SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(file))) {
+            assertEquals(Table.CAREGIVERS, reader.nextTable());
+            assertRows(caregivers, reader.rows());
+            assertEquals(Table.WAITLIST, reader.nextTable());
+            assertFalse(reader.rows().hasNext());
+            assertEquals(Table.APPOINTMENTS, reader.nextTable());
+            assertRows(appointments, reader.rows());
+            assertNull(reader.nextTable());
+        }
+    }
+
+    @Test
+    void unreadRowsAreSkipped() throws IOException {
+        List<Object[]> vaccines = new ArrayList<>();
+        for (int i = 0; i < SnapshotWriter.BLOCK_ROWS * 2; i++) {
+            vaccines.add(new Object[]{"v" + i, i});
+        }
+        List<Object[]> patients = new ArrayList<>();
+        patients.add(new Object[]{"p", new byte[16], new byte[16], "legacy"});
+        byte[] file = write(writer -> {
+            write(writer, Table.VACCINES, vaccines);
+            write(writer, Table.PATIENTS, patients);
+        });
+
+        try (SnapshotReader reader = new SnapshotReader(new ByteArrayInputStream(file))) {
+            assertEquals(Table.VACCINES, reader.nextTable());
+            reader.rows().next();
+            assertEquals(Table.PATIENTS, reader.nextTable());
+            assertRows(patients, reader.rows());
+        }
+    }
+
+    @Test
+    void otherFilesAreRefused() throws IOException {
+        assertThrows(IOException.class,
+                () -> new SnapshotReader(new ByteArrayInputStream("not a snapshot".getBytes(StandardCharsets.UTF_8))));
+
+        byte[] file = write(writer -> { });
+        file[SnapshotWriter.MAGIC.length] = SnapshotWriter.VERSION + 1;
+        assertThrows(IOException.class, () -> new SnapshotReader(new ByteArrayInputStream(file)));
+    }
+
+    // export_snapshot of one storage and import_snapshot into an empty one leave both with the same rows
+    @Test
+    void exportAndRestoreCopyEveryTable(@TempDir Path dir) throws IOException, SQLException {
+        Credentials credentials = new Credentials(new byte[]{1}, new byte[]{2}, HashSpec.LEGACY);
+        MemoryStorage source = new MemoryStorage(SlotSelection.FIRST);
+        source.caregivers().insert("c0", credentials);
+        source.caregivers().insert("c1", credentials);
+        source.patients().insert("p0", credentials);
+        source.patients().insert("p1", credentials);
+        source.vaccines().insert("v", 10);
+        for (int i = 0; i < 10; i++) {
+            source.availabilities().insert(Date.valueOf(DAY.plusDays(i)), "c" + i % 2);
+        }
+        source.appointments().reserve(Date.valueOf(DAY), "p0", "v");
+        source.waitlist().add(Date.valueOf(DAY.plusDays(20)), "v", "p1");
+        Storages.set(source);
+        Path file = dir.resolve("snapshot");
+        long exported = Snapshot.export(file);
+
+        MemoryStorage target = new MemoryStorage(SlotSelection.FIRST);
+        Storages.set(target);
+        assertEquals(exported, Snapshot.restore(file));
+        for (Table table : Table.values()) {
+            assertRows(rows(source, table), rows(target, table).iterator());
+        }
+        assertThrows(IllegalStateException.class, () -> Snapshot.restore(file));
+    }
+
+    private interface Body {
+        void write(SnapshotWriter writer) throws IOException;
+    }
+
+    private static byte[] write(Body body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SnapshotWriter writer = new SnapshotWriter(out)) {
+            body.write(writer);
+        }
+        return out.toByteArray();
+    }
+
+    private static void write(SnapshotWriter writer, Table table, List<Object[]> rows) throws IOException {
+        writer.beginTable(table);
+        for (Object[] row : rows) {
+            writer.writeRow(row);
+        }
+        writer.endTable();
+    }
+
+    private static List<Object[]> rows(MemoryStorage storage, Table table) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        storage.snapshots().forEachRow(table, rows::add);
+        return rows;
+    }
+
+    private static void assertRows(List<Object[]> expected, Iterator<Object[]> actual) {
+        for (Object[] row : expected) {
+            assertArrayEquals(row, actual.next());
+        }
+        assertFalse(actual.hasNext());
+    }
+}
@@ -0,0 +1,174 @@
+package scheduler.storage.memory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import scheduler.model.Appointment;
+import scheduler.model.Credentials;
+import scheduler.storage.AppointmentQuery;
+import scheduler.storage.SlotSelection;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryAppointmentRepositoryTest {
+
+    private static final Credentials CREDENTIALS = new Credentials(new byte[16], new byte[16], HashSpec.LEGACY);
+    private static final Date DAY = Date.valueOf("2030-01-01");
+    private static final Date NEXT_DAY = Date.valueOf("2030-01-02");
+
+    // More patients than slots reserve the same day at once: every slot is booked exactly once
+    @ParameterizedTest
+    @EnumSource(SlotSelection.class)
+    void concurrentReservesNeverDoubleBook(SlotSelection selection) throws Exception {
+        MemoryStorage storage = storage(selection, 8, 32, 100);
+        List<Appointment> booked = runConcurrently(32, i -> storage.appointments().reserve(DAY, "p" + i, "v"));
+
+        Set<String> caregivers = new HashSet<>();
+        for (Appointment appointment : booked) {
+            assertTrue(caregivers.add(appointment.getCaregiverName()),
+                    "two appointments with " + appointment.getCaregiverName());
+        }
+        assertEquals(8, caregivers.size());
+        assertEquals(0, freeSlots(storage));
+    }
+
+    @Test
+    void cancelFreesTheSlotAndReturnsTheDose() throws SQLException {
+        MemoryStorage storage = storage(SlotSelection.FIRST, 1, 2, 10);
+        Appointment appointment = storage.appointments().reserve(DAY, "p0", "v");
+        assertNotNull(appointment);
+        assertNull(storage.appointments().reserve(DAY, "p1", "v"));
+
+        // only the appointment's own patient or caregiver may cancel it
+        assertNull(storage.appointments().cancel(appointment.getAppointmentId(), "p1", null));
+        assertNotNull(storage.appointments().cancel(appointment.getAppointmentId(), "p0", null));
+        assertNull(storage.appointments().cancel(appointment.getAppointmentId(), "p0", null));
+
+        assertEquals(11, storage.vaccines().findDoses("v"));
+        assertEquals(1, freeSlots(storage));
+        assertEquals(0, appointments(storage, "c0"));
+        assertNotNull(storage.appointments().reserve(DAY, "p1", "v"));
+    }
+
+    @Test
+    void cancelAllWithdrawsTheSlotsAndReturnsTheDoses() throws SQLException {
+        MemoryStorage storage = storage(SlotSelection.FIRST, 1, 2, 10);
+        storage.availabilities().insert(NEXT_DAY, "c0");
+        assertNotNull(storage.appointments().reserve(DAY, "p0", "v"));
+        assertNotNull(storage.appointments().reserve(NEXT_DAY, "p1", "v"));
+
+        List<Appointment> cancelled = storage.appointments().cancelAll("c0", DAY, NEXT_DAY);
+
+        assertEquals(2, cancelled.size());
+        assertEquals(12, storage.vaccines().findDoses("v"));
+        assertEquals(0, appointments(storage, "c0"));
+        assertEquals(0, freeSlots(storage));
+        assertNull(storage.appointments().reserve(DAY, "p0", "v"));
+        assertNull(storage.appointments().reserveEarliest(DAY, null, "p0", "v"));
+    }
+
+    // A reservation racing cancel_day either is cancelled by it or undoes itself; none is left in a withdrawn slot
+    @Test
+    void reservesRacingCancelAllLeaveNoAppointments() throws Exception {
+        for (int round = 0; round < 2000; round++) {
+            MemoryStorage storage = storage(SlotSelection.FIRST, 4, 4, 100);
+            ExecutorService executor = Executors.newFixedThreadPool(5);
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                String patient = "p" + p;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return storage.appointments().reserve(DAY, patient, "v");
+                }));
+            }
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int c = 0; c < 4; c++) {
+                    storage.appointments().cancelAll("c" + c, DAY, DAY);
+                }
+                return null;
+            }));
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+
+            for (int c = 0; c < 4; c++) {
+                assertEquals(0, appointments(storage, "c" + c), "round " + round);
+            }
+            assertEquals(0, freeSlots(storage));
+        }
+    }
+
+    private interface Reservation {
+        Appointment reserve(int i) throws Exception;
+    }
+
+    // Run the reservations on their own threads, started together, and return the ones that booked a slot
+    private static List<Appointment> runConcurrently(int count, Reservation reservation) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Appointment>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int index = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                return reservation.reserve(index);
+            }));
+        }
+        start.countDown();
+        List<Appointment> booked = new ArrayList<>();
+        for (Future<Appointment> future : futures) {
+            Appointment appointment = future.get(10, TimeUnit.SECONDS);
+            if (appointment != null) {
+                booked.add(appointment);
+            }
+        }
+        executor.shutdown();
+        return booked;
+    }
+
+    // Caregivers c0.. with a slot on DAY, patients p0.. and a vaccine v
+    private static MemoryStorage storage(SlotSelection selection, int caregivers, int patients, int doses)
+            throws SQLException {
+        MemoryStorage storage = new MemoryStorage(selection);
+        for (int c = 0; c < caregivers; c++) {
+            storage.caregivers().insert("c" + c, CREDENTIALS);
+            storage.availabilities().insert(DAY, "c" + c);
+        }
+        for (int p = 0; p < patients; p++) {
+            storage.patients().insert("p" + p, CREDENTIALS);
+        }
+        storage.vaccines().insert("v", doses);
+        return storage;
+    }
+
+    private static int freeSlots(MemoryStorage storage) throws SQLException {
+        int[] free = {0};
+        storage.availabilities().forEachFree((time, caregiver) -> free[0]++);
+        return free[0];
+    }
+
+    private static int appointments(MemoryStorage storage, String caregiver) throws SQLException {
+        return storage.appointments().forEachOfCaregiver(caregiver, new AppointmentQuery(0, 1000, null, null),
+                appointment -> { });
+    }
+}
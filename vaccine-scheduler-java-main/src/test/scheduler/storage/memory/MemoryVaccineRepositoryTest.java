@@ -0,0 +1,34 @@
+package scheduler.storage.memory;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemoryVaccineRepositoryTest {
+
+    @Test
+    void journalBatchesApplyOnlyAfterTheLastOne() throws SQLException {
+        MemoryVaccineRepository vaccines = new MemoryVaccineRepository();
+        vaccines.insert("v", 10);
+        Map<String, Long> first = Collections.singletonMap("v", 5L);
+        Map<String, Long> second = Collections.singletonMap("v", -2L);
+
+        assertEquals(0, vaccines.findAppliedSeq("j"));
+        assertTrue(vaccines.addDoses(first, "j", 0, 4));
+        // the same batch again, and one that skips ahead, are refused
+        assertFalse(vaccines.addDoses(first, "j", 0, 4));
+        assertFalse(vaccines.addDoses(second, "j", 5, 6));
+        assertTrue(vaccines.addDoses(second, "j", 4, 6));
+
+        assertEquals(13, vaccines.findDoses("v"));
+        assertEquals(6, vaccines.findAppliedSeq("j"));
+        // another journal has marks of its own
+        assertEquals(0, vaccines.findAppliedSeq("k"));
+    }
+}
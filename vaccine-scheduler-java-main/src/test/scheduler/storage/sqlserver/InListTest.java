@@ -0,0 +1,50 @@
+package scheduler.storage.sqlserver;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InListTest {
+
+    @Test
+    void chunksArePaddedToAFewSizes() {
+        Set<Integer> sizes = new HashSet<>();
+        for (int count = 1; count <= 3000; count++) {
+            List<String> keys = keys(count);
+            List<String> seen = new ArrayList<>();
+            for (List<String> chunk : InList.chunks(keys)) {
+                sizes.add(chunk.size());
+                // the padding repeats the chunk's last key
+                for (String key : chunk) {
+                    if (seen.isEmpty() || !seen.get(seen.size() - 1).equals(key)) {
+                        seen.add(key);
+                    }
+                }
+            }
+            assertEquals(keys, seen);
+        }
+        assertEquals(Set.of(16, 32, 64, 128, 256, 512, 1024), sizes);
+    }
+
+    @Test
+    void placeholdersMatchTheChunk() {
+        List<String> chunk = InList.chunks(keys(3)).get(0);
+        String placeholders = InList.placeholders(chunk);
+        assertTrue(placeholders.startsWith("(?, ?") && placeholders.endsWith("?)"));
+        assertEquals(chunk.size(), placeholders.chars().filter(c -> c == '?').count());
+    }
+
+    private static List<String> keys(int count) {
+        List<String> keys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            keys.add("user" + i);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,76 @@
+package scheduler.storage.sqlserver;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import scheduler.model.Credentials;
+import scheduler.storage.AppointmentQuery;
+import scheduler.storage.SlotSelection;
+import scheduler.util.PasswordHasher.HashSpec;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs against the database the Server, DBName, UserID and Password environment variables point to, which needs
+// the tables of create.sql. Every run uses users and a vaccine of its own.
+@EnabledIfEnvironmentVariable(named = "Server", matches = ".+")
+class SqlServerAppointmentRepositoryTest {
+
+    private static final Credentials CREDENTIALS = new Credentials(new byte[16], new byte[16], HashSpec.LEGACY);
+    private static final Date DAY = Date.valueOf("2099-01-01");
+
+    // cancel_day racing reservations for the caregiver's slots neither fails on the foreign key nor leaves an
+    // appointment behind
+    @Test
+    void reservesRacingCancelAllLeaveNoAppointments() throws Exception {
+        for (SlotSelection selection : new SlotSelection[]{SlotSelection.FIRST, SlotSelection.SKIP_LOCKED}) {
+            SqlServerStorage storage = new SqlServerStorage(selection);
+            for (int round = 0; round < 20; round++) {
+                String prefix = UUID.randomUUID().toString().substring(0, 8);
+                String vaccine = prefix + "-v";
+                storage.vaccines().insert(vaccine, 100);
+                for (int i = 0; i < 4; i++) {
+                    storage.caregivers().insert(prefix + "-c" + i, CREDENTIALS);
+                    storage.availabilities().insert(DAY, prefix + "-c" + i);
+                    storage.patients().insert(prefix + "-p" + i, CREDENTIALS);
+                }
+
+                ExecutorService executor = Executors.newFixedThreadPool(5);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int p = 0; p < 4; p++) {
+                    String patient = prefix + "-p" + p;
+                    futures.add(executor.submit(() -> {
+                        start.await();
+                        return storage.appointments().reserve(DAY, patient, vaccine);
+                    }));
+                }
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int c = 0; c < 4; c++) {
+                        storage.appointments().cancelAll(prefix + "-c" + c, DAY, DAY);
+                    }
+                    return null;
+                }));
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get(30, TimeUnit.SECONDS);
+                }
+                executor.shutdown();
+
+                for (int c = 0; c < 4; c++) {
+                    assertEquals(0, storage.appointments().forEachOfCaregiver(prefix + "-c" + c,
+                            new AppointmentQuery(0, 100, null, null), appointment -> { }), "round " + round);
+                }
+            }
+        }
+    }
+}